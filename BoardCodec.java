@@ -0,0 +1,113 @@
+/**
+ * Class BoardCodec
+ * compact binary forms of a 9x9 board, row by row with 0 for empty.
+ *
+ * Nibbles: every square takes 4 bits, two squares per byte with the
+ * first square in the high half. A board always takes 41 bytes.
+ *
+ * Givens: an 81 bit mask of the filled squares (11 bytes, square 0 in
+ * the highest bit of the first byte) followed by the values of the
+ * filled squares in order, 4 bits each. A puzzle with g clues takes
+ * 11 + (g+1)/2 bytes, 24 bytes for 25 clues.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public final class BoardCodec {
+
+	private static final int CELLS = 81;
+	public static final int NIBBLE_BYTES = (CELLS + 1)/2;
+	public static final int MASK_BYTES = (CELLS + 7)/8;
+	public static final int MAX_GIVENS_BYTES = MASK_BYTES + NIBBLE_BYTES;
+
+	private BoardCodec() {}
+
+	/**
+	 * encodeNibbles
+	 * @param cells the board, values 0 to 9
+	 * @param dst where the 41 bytes are written
+	 * @param off the position in dst
+	 */
+	public static void encodeNibbles(int[] cells, byte[] dst, int off) {
+		for (int i = 0; i < CELLS; i += 2) {
+			int low = (i + 1 < CELLS) ? cells[i + 1] : 0;
+			dst[off + i/2] = (byte) (cells[i] << 4 | low);
+		}
+	}
+
+	/**
+	 * decodeNibbles
+	 * @param src the bytes written by encodeNibbles
+	 * @param off the position in src
+	 * @param cells where the 81 values are written
+	 */
+	public static void decodeNibbles(byte[] src, int off, int[] cells) {
+		for (int i = 0; i < CELLS; i += 2) {
+			int b = src[off + i/2];
+			cells[i] = (b >> 4) & 0xF;
+			if (i + 1 < CELLS) cells[i + 1] = b & 0xF;
+		}
+	}
+
+	/**
+	 * encodeGivens
+	 * @param cells the board, values 0 to 9
+	 * @param dst where the bytes are written, room for MAX_GIVENS_BYTES
+	 * @param off the position in dst
+	 * @return the number of bytes written
+	 */
+	public static int encodeGivens(int[] cells, byte[] dst, int off) {
+		for (int k = 0; k < MASK_BYTES; k++) {
+			dst[off + k] = 0;
+		}
+		int pos = off + MASK_BYTES;
+		int nibbles = 0;
+		for (int i = 0; i < CELLS; i++) {
+			if (cells[i] == 0) continue;
+			dst[off + i/8] |= (byte) (0x80 >>> (i%8));
+			if (nibbles%2 == 0) {
+				dst[pos] = (byte) (cells[i] << 4);
+			} else {
+				dst[pos++] |= (byte) cells[i];
+			}
+			nibbles++;
+		}
+		return MASK_BYTES + (nibbles + 1)/2;
+	}
+
+	/**
+	 * decodeGivens
+	 * @param src the bytes written by encodeGivens
+	 * @param off the position in src
+	 * @param cells where the 81 values are written
+	 * @return the number of bytes read
+	 */
+	public static int decodeGivens(byte[] src, int off, int[] cells) {
+		int pos = off + MASK_BYTES;
+		int nibbles = 0;
+		for (int i = 0; i < CELLS; i++) {
+			if ((src[off + i/8] & (0x80 >>> (i%8))) == 0) {
+				cells[i] = 0;
+			} else {
+				int b = src[pos + nibbles/2];
+				cells[i] = (nibbles%2 == 0) ? (b >> 4) & 0xF : b & 0xF;
+				nibbles++;
+			}
+		}
+		return MASK_BYTES + (nibbles + 1)/2;
+	}
+
+	/**
+	 * givensLength
+	 * @param src bytes written by encodeGivens
+	 * @param off the position in src
+	 * @return the length of the encoded board, read from its mask
+	 */
+	public static int givensLength(byte[] src, int off) {
+		int givens = 0;
+		for (int k = 0; k < MASK_BYTES; k++) {
+			givens += Integer.bitCount(src[off + k] & 0xFF);
+		}
+		return MASK_BYTES + (givens + 1)/2;
+	}
+}
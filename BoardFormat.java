@@ -0,0 +1,210 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Class BoardFormat
+ * parses and formats boards in text form without allocating
+ * anything per square and without exceptions. Two text forms are read,
+ * shown here for 9x9 boards:
+ *   9 lines of at least 9 characters, anything after the 9th character
+ *   of a line is ignored (the form of the .sud files and getBoard())
+ *   one line of 81 characters
+ * A first line of 81 or more characters is read as the one line form.
+ * The characters 1-9 are values, on boards larger than 9x9 followed by
+ * A-Z (or a-z) for 10 and up. Any other character, and a value larger
+ * than the board allows, is an empty square.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public final class BoardFormat {
+
+	private static final int SIZE = 9;
+	private static final int CELLS = SIZE*SIZE;
+	// parser state: line << 16 | column, or one of these
+	private static final int DONE = -1;
+	private static final int FAIL = -2;
+
+	private BoardFormat() {}
+
+	/**
+	 * parse
+	 * @param s the text
+	 * @param cells where the 81 values are written row by row, 0 for empty.
+	 * The content is undefined if the text is not a board.
+	 * @return boolean true if the text is a board
+	 */
+	public static boolean parse(CharSequence s, int[] cells) {
+		return parse(s, SIZE, cells);
+	}
+
+	/**
+	 * parse
+	 * @param s the text
+	 * @param size the number of rows of the board, 9 for a 9x9 board
+	 * @param cells where the size*size values are written row by row,
+	 * 0 for empty. The content is undefined if the text is not a board.
+	 * @return boolean true if the text is a board
+	 */
+	public static boolean parse(CharSequence s, int size, int[] cells) {
+		int state = 0;
+		for (int i = 0, n = s.length(); i < n && state >= 0; i++) {
+			state = step(cells, size, state, s.charAt(i));
+		}
+		return finished(size, state);
+	}
+
+	/**
+	 * parse
+	 * @param s characters holding the text
+	 * @param off where the text starts
+	 * @param len the length of the text
+	 * @param cells where the 81 values are written, see parse(CharSequence, int[])
+	 * @return boolean true if the text is a board
+	 */
+	public static boolean parse(char[] s, int off, int len, int[] cells) {
+		int state = 0;
+		for (int i = off, end = off + len; i < end && state >= 0; i++) {
+			state = step(cells, SIZE, state, s[i]);
+		}
+		return finished(SIZE, state);
+	}
+
+	/**
+	 * parse
+	 * @param s ASCII bytes holding the text
+	 * @param off where the text starts
+	 * @param len the length of the text
+	 * @param cells where the 81 values are written, see parse(CharSequence, int[])
+	 * @return boolean true if the text is a board
+	 */
+	public static boolean parse(byte[] s, int off, int len, int[] cells) {
+		int state = 0;
+		for (int i = off, end = off + len; i < end && state >= 0; i++) {
+			state = step(cells, SIZE, state, s[i]);
+		}
+		return finished(SIZE, state);
+	}
+
+	/**
+	 * parse
+	 * reads the ASCII text between the position and the limit of a
+	 * buffer. The position of the buffer is not changed.
+	 * @param s the buffer
+	 * @param cells where the 81 values are written, see parse(CharSequence, int[])
+	 * @return boolean true if the text is a board
+	 */
+	public static boolean parse(ByteBuffer s, int[] cells) {
+		int state = 0;
+		for (int i = s.position(), end = s.limit(); i < end && state >= 0; i++) {
+			state = step(cells, SIZE, state, s.get(i));
+		}
+		return finished(SIZE, state);
+	}
+
+	/**
+	 * format
+	 * writes a board as 9 lines of 9 digits, each ended by '\n'
+	 * @param cells the board row by row
+	 * @param dst where the 90 characters are written
+	 * @param off the position in dst
+	 */
+	public static void format(int[] cells, char[] dst, int off) {
+		format(cells, SIZE, dst, off);
+	}
+
+	/**
+	 * format
+	 * writes a board as size lines of size characters, each ended by '\n'
+	 * @param cells the board row by row
+	 * @param size the number of rows of the board
+	 * @param dst where the size*(size+1) characters are written
+	 * @param off the position in dst
+	 */
+	public static void format(int[] cells, int size, char[] dst, int off) {
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				dst[off++] = symbol(cells[i*size + j]);
+			}
+			dst[off++] = '\n';
+		}
+	}
+
+	/**
+	 * symbol
+	 * @param value a value from 0 to 35
+	 * @return the character of the value, '0' for an empty square
+	 */
+	public static char symbol(int value) {
+		return (char) ((value < 10) ? '0' + value : 'A' + value - 10);
+	}
+
+	/**
+	 * value
+	 * @param c a character
+	 * @param size the number of rows of the board
+	 * @return the value of the character, or 0 if it is not a value
+	 * of that board
+	 */
+	public static int value(int c, int size) {
+		int v = (c >= '1' && c <= '9') ? c - '0'
+				: (c >= 'A' && c <= 'Z') ? c - 'A' + 10
+				: (c >= 'a' && c <= 'z') ? c - 'a' + 10 : 0;
+		return (v <= size) ? v : 0;
+	}
+
+	/**
+	 * formatLine
+	 * writes a board as one line of 81 digits without a line end
+	 * @param cells the board row by row
+	 * @param dst where the 81 characters are written as ASCII
+	 * @param off the position in dst
+	 */
+	public static void formatLine(int[] cells, byte[] dst, int off) {
+		for (int i = 0; i < CELLS; i++) {
+			dst[off + i] = (byte) ('0' + cells[i]);
+		}
+	}
+
+	/**
+	 * formatLine
+	 * appends a board as one line of 81 digits without a line end
+	 * @param cells the board row by row
+	 * @param sb where the characters are appended
+	 */
+	public static void formatLine(int[] cells, StringBuilder sb) {
+		for (int i = 0; i < CELLS; i++) {
+			sb.append((char) ('0' + cells[i]));
+		}
+	}
+
+	/**
+	 * step
+	 * reads one character
+	 * @return the next state, DONE when a whole board was read or FAIL
+	 * when a line of the many line form is shorter than size characters
+	 */
+	private static int step(int[] cells, int size, int state, int c) {
+		int line = state >>> 16;
+		int col = state & 0xFFFF;
+		if (c == '\n') {
+			if (col < size) return FAIL;
+			return (line == size - 1) ? DONE : (line + 1) << 16;
+		}
+		if (line == 0) {
+			// the first line may be the whole board
+			if (col < size*size) cells[col] = value(c, size);
+			if (col + 1 == size*size) return DONE;
+		} else if (col < size) {
+			cells[line*size + col] = value(c, size);
+		}
+		return line << 16 | Math.min(col + 1, 0xFFFF);
+	}
+
+	/**
+	 * finished
+	 * the text may end without a line end after the last line
+	 */
+	private static boolean finished(int size, int state) {
+		return state == DONE || (state >= 0 && state >>> 16 == size - 1 && (state & 0xFFFF) >= size);
+	}
+}
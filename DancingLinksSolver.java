@@ -0,0 +1,409 @@
+/**
+ * Class DancingLinksSolver
+ * solves a sudoku as an exact cover problem with Knuth's Dancing Links
+ * (Algorithm X). There are 4*N*N columns: one per square, and one per
+ * value in each row, column and block, 324 for a 9x9 board. Each of the
+ * N*N*N matrix rows is "value v in square i" and covers four columns.
+ * The matrix is built once per instance and is restored after every
+ * search, so loading a new board only selects the given rows.
+ *
+ * On variants every extra unit adds N columns, and every other group
+ * adds N secondary columns that may be covered at most once. Sums can
+ * not be put as an exact cover, so cages with a sum are left to
+ * SudokuSolver.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class DancingLinksSolver implements SudokuEngine {
+
+	private static final int ROOT = 0;
+
+	private final SudokuGeometry geometry;
+	private final int size;
+	private final int cellCount;
+	private final int columnCount;
+	private final int rowCount;
+	private final int firstNode;
+	private final int[] rowFirst; // first node of each matrix row
+	private final int[] nodeRow;	// matrix row of each node
+
+	// the links of the matrix, header i is column i-1
+	private final int[] left;
+	private final int[] right;
+	private final int[] up;
+	private final int[] down;
+	private final int[] column;
+	private final int[] columnSize;
+	private final boolean[] covered;
+
+	private final int[] grid;
+	private final int[] givens; // first node of each given row
+	private int nbrGivens;
+	private final int[] chosen; // first node of each row in the search
+	private final int[] solution;
+	private int solutions;
+	private int limit;
+	private long nodes;
+	// the budget of the current search, looked at when nodes reaches nextCheck
+	private SolveBudget budget;
+	private long nodeLimit;
+	private long nextCheck = Long.MAX_VALUE;
+	private boolean exhausted;
+	// filled while a listener is set, otherwise null
+	private SolverListener listener;
+	private SolverStats stats;
+
+	public DancingLinksSolver() {
+		this(SudokuGeometry.STANDARD);
+	}
+
+	/**
+	 * constructor for a DancingLinksSolver of any size or variant
+	 * @param geometry the size of the boards
+	 * @throws IllegalArgumentException if the geometry has groups
+	 * with a sum
+	 */
+	public DancingLinksSolver(SudokuGeometry geometry) {
+		if (geometry.hasSums())
+			throw new IllegalArgumentException("sums are not an exact cover, use SudokuSolver");
+		this.geometry = geometry;
+		size = geometry.size;
+		cellCount = geometry.cells;
+		int extra = geometry.unitCount - 3*size;
+		int primary = cellCount + geometry.unitCount*size;
+		columnCount = primary + (geometry.groupCount - extra)*size;
+		rowCount = cellCount*size;
+		firstNode = columnCount + 1;
+		rowFirst = new int[rowCount + 1];
+		rowFirst[0] = firstNode;
+		for (int r = 0; r < rowCount; r++) {
+			int cell = r/size;
+			rowFirst[r + 1] = rowFirst[r] + 4
+					+ geometry.cellGroupStart[cell + 1] - geometry.cellGroupStart[cell];
+		}
+		int nodeCount = rowFirst[rowCount];
+		nodeRow = new int[nodeCount];
+		left = new int[nodeCount];
+		right = new int[nodeCount];
+		up = new int[nodeCount];
+		down = new int[nodeCount];
+		column = new int[nodeCount];
+		columnSize = new int[columnCount + 1];
+		covered = new boolean[columnCount + 1];
+		grid = new int[cellCount];
+		givens = new int[cellCount];
+		chosen = new int[cellCount];
+		solution = new int[cellCount];
+		// the secondary columns are not linked to the root
+		for (int c = 0; c <= columnCount; c++) {
+			left[c] = (c == 0) ? primary : (c > primary) ? c : c - 1;
+			right[c] = (c == primary) ? 0 : (c > primary) ? c : c + 1;
+			up[c] = c;
+			down[c] = c;
+			column[c] = c;
+		}
+		for (int r = 0; r < rowCount; r++) {
+			int cell = r/size;
+			int v = r%size;
+			int row = cell/size;
+			int col = cell%size;
+			int block = geometry.blockIndex(row, col);
+			int first = rowFirst[r];
+			int len = rowFirst[r + 1] - first;
+			int[] cols = new int[len];
+			cols[0] = cell;
+			cols[1] = cellCount + row*size + v;
+			cols[2] = 2*cellCount + col*size + v;
+			cols[3] = 3*cellCount + block*size + v;
+			for (int k = 4; k < len; k++) {
+				int g = geometry.cellGroups[geometry.cellGroupStart[cell] + k - 4];
+				cols[k] = geometry.isHouse(g) ? cellCount + (3*size + g)*size + v
+											: primary + (g - extra)*size + v;
+			}
+			for (int k = 0; k < len; k++) {
+				int n = first + k;
+				int c = cols[k] + 1;
+				left[n] = first + (k + len - 1)%len;
+				right[n] = first + (k + 1)%len;
+				nodeRow[n] = r;
+				column[n] = c;
+				up[n] = up[c];
+				down[n] = c;
+				down[up[c]] = n;
+				up[c] = n;
+				columnSize[c]++;
+			}
+		}
+	}
+
+	/**
+	 * load
+	 * loads a board into the solver
+	 * @param board an N by N matrix where empty squares are 0
+	 * @return boolean false if the board breaks the sudoku rules
+	 */
+	public boolean load(int[][] board) {
+		for (int i = 0; i < cellCount; i++) {
+			grid[i] = board[i/size][i%size];
+		}
+		return init();
+	}
+
+	/**
+	 * load
+	 * loads a board stored row by row in a flat array
+	 * @param cells array with N*N values where empty squares are 0
+	 * @return boolean false if the board breaks the sudoku rules
+	 */
+	public boolean load(int[] cells) {
+		System.arraycopy(cells, 0, grid, 0, cellCount);
+		return init();
+	}
+
+	/**
+	 * init
+	 * selects the rows of the given values in the grid. The rows
+	 * selected by the previous board are released first.
+	 * @return boolean false if the grid breaks the sudoku rules
+	 */
+	private boolean init() {
+		long t0 = (stats != null) ? System.nanoTime() : 0;
+		while (nbrGivens > 0) {
+			unselect(givens[--nbrGivens]);
+		}
+		solutions = 0;
+		nodes = 0;
+		if (stats != null) stats.reset();
+		for (int i = 0; i < cellCount; i++) {
+			int val = grid[i];
+			if (val == 0) continue;
+			if (val < 0 || val > size)
+				return false;
+			int first = rowFirst[i*size + val - 1];
+			if (covered[column[first]])
+				return false;
+			for (int j = right[first]; j != first; j = right[j]) {
+				if (covered[column[j]])
+					return false;
+			}
+			select(first);
+			givens[nbrGivens++] = first;
+		}
+		if (stats != null) stats.loadNanos = System.nanoTime() - t0;
+		return true;
+	}
+
+	/**
+	 * countSolutions
+	 * runs Algorithm X on the loaded board until all solutions are
+	 * found or the limit is reached. The first solution is kept.
+	 * @param limit the search stops when this many solutions are found
+	 * @return the number of solutions found, at most limit
+	 */
+	public int countSolutions(int limit) {
+		return countSolutions(limit, null);
+	}
+
+	/**
+	 * countSolutions
+	 * like countSolutions(int) but stops early if the budget runs out,
+	 * see isExhausted. The budget is looked at every
+	 * SolveBudget.CHECK_INTERVAL nodes.
+	 * @param limit the search stops when this many solutions are found
+	 * @param budget the budget, or null for none
+	 * @return the number of solutions found before the search stopped
+	 */
+	public int countSolutions(int limit, SolveBudget budget) {
+		this.limit = limit;
+		this.budget = budget;
+		solutions = 0;
+		exhausted = false;
+		if (budget != null) {
+			nodeLimit = budget.nodeLimit(nodes);
+			nextCheck = nodes;
+		} else {
+			nextCheck = Long.MAX_VALUE;
+		}
+		long t0 = (stats != null) ? System.nanoTime() : 0;
+		long start = nodes;
+		// a second search of the same board reports only itself
+		if (stats != null && stats.calls > 0) stats.reset();
+		if (limit > 0)
+			search(0);
+		if (stats != null) record(t0, start);
+		return solutions;
+	}
+
+	/**
+	 * setSolverListener
+	 * @param listener gets the stats after every search, null to stop
+	 * recording them
+	 */
+	public void setSolverListener(SolverListener listener) {
+		this.listener = listener;
+		stats = (listener != null) ? new SolverStats() : null;
+	}
+
+	/**
+	 * getStats
+	 * @return the stats of the last loaded board, or null if there is
+	 * no listener
+	 */
+	public SolverStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * isExhausted
+	 * @return boolean true if the last search stopped because its
+	 * budget ran out
+	 */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
+	/**
+	 * outOfBudget
+	 * looks at the budget of the search. When it has run out the limit
+	 * is lowered to the solutions found, which makes the search unwind.
+	 * @return boolean true if the search has to stop
+	 */
+	private boolean outOfBudget() {
+		if (nodes >= nodeLimit || budget.isOver()) {
+			exhausted = true;
+			limit = solutions;
+			nextCheck = Long.MAX_VALUE;
+			return true;
+		}
+		nextCheck = Math.min(nodeLimit, nodes + SolveBudget.CHECK_INTERVAL);
+		return false;
+	}
+
+	/**
+	 * getSolution
+	 * @return a copy of the first solution found as an N by N matrix,
+	 * or null if no solution was found
+	 */
+	public int[][] getSolution() {
+		if (solutions == 0) return null;
+		int[][] res = new int[size][size];
+		for (int i = 0; i < cellCount; i++) {
+			res[i/size][i%size] = solution[i];
+		}
+		return res;
+	}
+
+	/**
+	 * getNodes
+	 * @return the number of search nodes visited by the last search
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	public SudokuGeometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * record
+	 * adds a finished search to the stats and tells the listener
+	 */
+	private void record(long t0, long start) {
+		stats.searchNanos += System.nanoTime() - t0;
+		stats.nodes += nodes - start;
+		stats.solutions += solutions;
+		stats.calls++;
+		listener.searched(stats);
+	}
+
+	/**
+	 * search
+	 * covers the column with the fewest rows left and tries each of
+	 * its rows in turn.
+	 * @param k the number of rows chosen so far
+	 */
+	private void search(int k) {
+		nodes++;
+		if (nodes >= nextCheck && outOfBudget()) return;
+		if (right[ROOT] == ROOT) {
+			if (++solutions == 1) {
+				System.arraycopy(grid, 0, solution, 0, cellCount);
+				for (int i = 0; i < k; i++) {
+					int r = nodeRow[chosen[i]];
+					solution[r/size] = r%size + 1;
+				}
+			}
+			return;
+		}
+		int c = right[ROOT];
+		for (int j = right[c]; j != ROOT; j = right[j]) {
+			if (columnSize[j] < columnSize[c]) c = j;
+		}
+		if (stats != null) stats.node(k, columnSize[c]);
+		if (columnSize[c] == 0) return;
+		cover(c);
+		for (int r = down[c]; r != c && solutions < limit; r = down[r]) {
+			chosen[k] = r;
+			for (int j = right[r]; j != r; j = right[j]) {
+				cover(column[j]);
+			}
+			search(k + 1);
+			for (int j = left[r]; j != r; j = left[j]) {
+				uncover(column[j]);
+			}
+		}
+		uncover(c);
+	}
+
+	/**
+	 * select
+	 * covers all the columns of a row, used for the given values
+	 * @param first the first node of the row
+	 */
+	private void select(int first) {
+		cover(column[first]);
+		for (int j = right[first]; j != first; j = right[j]) {
+			cover(column[j]);
+		}
+	}
+
+	/**
+	 * unselect
+	 * reverts select
+	 * @param first the first node of the row
+	 */
+	private void unselect(int first) {
+		for (int j = left[first]; j != first; j = left[j]) {
+			uncover(column[j]);
+		}
+		uncover(column[first]);
+	}
+
+	private void cover(int c) {
+		covered[c] = true;
+		left[right[c]] = left[c];
+		right[left[c]] = right[c];
+		for (int i = down[c]; i != c; i = down[i]) {
+			for (int j = right[i]; j != i; j = right[j]) {
+				up[down[j]] = up[j];
+				down[up[j]] = down[j];
+				columnSize[column[j]]--;
+			}
+		}
+	}
+
+	private void uncover(int c) {
+		for (int i = up[c]; i != c; i = up[i]) {
+			for (int j = left[i]; j != i; j = left[j]) {
+				columnSize[column[j]]++;
+				up[down[j]] = j;
+				down[up[j]] = j;
+			}
+		}
+		left[right[c]] = c;
+		right[left[c]] = c;
+		covered[c] = false;
+	}
+}
@@ -0,0 +1,644 @@
+import java.util.Arrays;
+
+/**
+ * Class DifficultyGrader
+ * grades a 9x9 sudoku the way a person would solve it. The candidates
+ * of every square are kept as bitmasks and the techniques below are
+ * tried from the easiest, one deduction at a time, going back to the
+ * easiest after every deduction:
+ *   singles (hidden, then naked)
+ *   naked and hidden pairs and triples
+ *   pointing (a value of a block locked in one row or column)
+ *   box-line (a value of a row or column locked in one block)
+ *   X-wing and swordfish
+ *   XY-wing
+ *   chains (a candidate whose singles lead to a contradiction)
+ * The grade is the hardest technique that was needed and a rating, the
+ * weight of that technique plus one for each further time it was needed,
+ * at most 4, so a rating never reaches the weight of the next technique.
+ * A puzzle that the techniques can not finish is graded BACKTRACKING.
+ *
+ * The same deductions give hints: hint stops at the first square that
+ * is filled and tells which single filled it.
+ *
+ * Nothing is allocated by rate, so every generated puzzle can be graded.
+ * One grader is not meant to be used by several threads at once.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class DifficultyGrader {
+
+	public enum Technique {
+		HIDDEN_SINGLE(10), NAKED_SINGLE(15), NAKED_PAIR(20), HIDDEN_PAIR(25),
+		NAKED_TRIPLE(30), HIDDEN_TRIPLE(35), POINTING(40), BOX_LINE(45),
+		X_WING(50), SWORDFISH(60), XY_WING(70), CHAIN(80), BACKTRACKING(100);
+
+		private final int weight;
+
+		Technique(int weight) {
+			this.weight = weight;
+		}
+
+		/**
+		 * getWeight
+		 * @return the lowest rating of a puzzle that needs this technique
+		 */
+		public int getWeight() {
+			return weight;
+		}
+	};
+
+	/**
+	 * class Grade
+	 * the result of grading one puzzle
+	 */
+	public static class Grade {
+		private final Technique hardest;
+		private final int rating;
+		private final int[] uses;
+
+		Grade(Technique hardest, int rating, int[] uses) {
+			this.hardest = hardest;
+			this.rating = rating;
+			this.uses = uses;
+		}
+
+		/**
+		 * getHardest
+		 * @return the hardest technique needed, BACKTRACKING if the
+		 * techniques were not enough, or null if no square was empty
+		 */
+		public Technique getHardest() {
+			return hardest;
+		}
+
+		/**
+		 * getRating
+		 * @return the rating, 0 for a full board
+		 */
+		public int getRating() {
+			return rating;
+		}
+
+		/**
+		 * getUses
+		 * @param t a technique
+		 * @return how many deductions were made with it
+		 */
+		public int getUses(Technique t) {
+			return uses[t.ordinal()];
+		}
+
+		@Override
+		public String toString() {
+			return (hardest == null) ? "full (0)"
+					: hardest.name().toLowerCase() + " (" + rating + ")";
+		}
+	}
+
+	private static final int SIZE = 9;
+	private static final int CELLS = SIZE*SIZE;
+	private static final int UNITS_COUNT = 3*SIZE;
+	private static final int ALL = 0x3FE;
+	private static final int[] ROW = SudokuGeometry.STANDARD.row;
+	private static final int[] COL = SudokuGeometry.STANDARD.col;
+	private static final int[] BLOCK = SudokuGeometry.STANDARD.block;
+	private static final int[] PEERS = SudokuGeometry.STANDARD.peers;
+	private static final int[] UNITS = SudokuGeometry.STANDARD.units;
+	private static final Technique[] TECHNIQUES = Technique.values();
+
+	private final int[] grid = new int[CELLS];
+	private final int[] cand = new int[CELLS];
+	private int empty;
+	private final int[] uses = new int[TECHNIQUES.length];
+	private Technique hardest;
+	// the square filled by the last single and the unit of a hidden single
+	private int placedCell;
+	private int placedUnit;
+
+	// the state before a chain is tried, see chain
+	private final int[] savedGrid = new int[CELLS];
+	private final int[] savedCand = new int[CELLS];
+
+	// squares or values of one unit taking part in a subset or fish
+	private final int[] members = new int[SIZE];
+	private final int[] memberMask = new int[SIZE];
+
+	/**
+	 * grade
+	 * @param board the board row by row, 81 values where 0 is empty.
+	 * It must not break the sudoku rules.
+	 * @return the grade of the board
+	 */
+	public Grade grade(int[] board) {
+		int rating = rate(board);
+		return new Grade(hardest, rating, uses.clone());
+	}
+
+	/**
+	 * rate
+	 * grades a board without allocating anything
+	 * @param board the board row by row, 81 values where 0 is empty.
+	 * It must not break the sudoku rules.
+	 * @return the rating of the board, see the class comment
+	 */
+	public int rate(int[] board) {
+		load(board);
+		hardest = null;
+		while (empty > 0) {
+			Technique t = step();
+			if (t == null) t = Technique.BACKTRACKING;
+			uses[t.ordinal()]++;
+			if (hardest == null || t.ordinal() > hardest.ordinal()) hardest = t;
+			if (t == Technique.BACKTRACKING) break;
+		}
+		if (hardest == null) return 0;
+		return hardest.weight + Math.min(4, uses[hardest.ordinal()] - 1);
+	}
+
+	/**
+	 * hint
+	 * finds the next square that can be filled, using the easiest
+	 * techniques that lead to one
+	 * @param board the board row by row, 81 values where 0 is empty.
+	 * It must not break the sudoku rules.
+	 * @param candidates the candidates of each square as bitmasks, bit v
+	 * for value v and 0 for filled squares, or null to work them out
+	 * from the board
+	 * @return the hint, or null if the board is full, has no solution or
+	 * the techniques can not fill any square
+	 */
+	public Hint hint(int[] board, int[] candidates) {
+		if (candidates == null) {
+			load(board);
+		} else {
+			Arrays.fill(uses, 0);
+			empty = 0;
+			for (int i = 0; i < CELLS; i++) {
+				grid[i] = board[i];
+				cand[i] = candidates[i];
+				if (board[i] == 0) empty++;
+			}
+		}
+		Technique most = null;
+		while (empty > 0) {
+			int before = empty;
+			Technique t = step();
+			if (t == null) return null;
+			if (most == null || t.ordinal() > most.ordinal()) most = t;
+			if (empty < before)
+				return new Hint(placedCell, grid[placedCell], t, placedUnit, most);
+		}
+		return null;
+	}
+
+	private void load(int[] board) {
+		Arrays.fill(uses, 0);
+		empty = 0;
+		for (int i = 0; i < CELLS; i++) {
+			grid[i] = board[i];
+			if (board[i] == 0) {
+				cand[i] = ALL;
+				empty++;
+			} else {
+				cand[i] = 0;
+			}
+		}
+		for (int i = 0; i < CELLS; i++) {
+			if (grid[i] != 0) removeFromPeers(i, 1 << grid[i]);
+		}
+	}
+
+	/**
+	 * step
+	 * makes one deduction with the easiest technique that has one
+	 * @return the technique used, or null if none could be used or the
+	 * board has no solution
+	 */
+	private Technique step() {
+		int r = hiddenSingle();
+		if (r != 0) return (r > 0) ? Technique.HIDDEN_SINGLE : null;
+		r = nakedSingle();
+		if (r != 0) return (r > 0) ? Technique.NAKED_SINGLE : null;
+		if (nakedSubset(2)) return Technique.NAKED_PAIR;
+		if (hiddenSubset(2)) return Technique.HIDDEN_PAIR;
+		if (nakedSubset(3)) return Technique.NAKED_TRIPLE;
+		if (hiddenSubset(3)) return Technique.HIDDEN_TRIPLE;
+		if (lockedCandidates(2*SIZE, UNITS_COUNT)) return Technique.POINTING;
+		if (lockedCandidates(0, 2*SIZE)) return Technique.BOX_LINE;
+		if (fish(2)) return Technique.X_WING;
+		if (fish(3)) return Technique.SWORDFISH;
+		if (xyWing()) return Technique.XY_WING;
+		if (chain()) return Technique.CHAIN;
+		return null;
+	}
+
+	/**
+	 * hiddenSingle
+	 * places the first value that has only one square left in a unit
+	 * @return 1 if a value was placed, 0 if there was none and -1 if a
+	 * value has no square left
+	 */
+	private int hiddenSingle() {
+		for (int u = 0; u < UNITS_COUNT; u++) {
+			int once = 0, twice = 0, placed = 0;
+			for (int k = u*SIZE; k < (u+1)*SIZE; k++) {
+				int i = UNITS[k];
+				if (grid[i] != 0) {
+					placed |= 1 << grid[i];
+				} else {
+					twice |= once & cand[i];
+					once |= cand[i];
+				}
+			}
+			if ((once | placed) != ALL) return -1;
+			int singles = once & ~twice & ~placed;
+			if (singles != 0) {
+				int bit = singles & -singles;
+				int k = u*SIZE;
+				while ((cand[UNITS[k]] & bit) == 0) k++;
+				placedUnit = u;
+				place(UNITS[k], bit);
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * nakedSingle
+	 * fills the first square that has only one candidate left
+	 * @return 1 if a square was filled, 0 if there was none and -1 if a
+	 * square has no candidate left
+	 */
+	private int nakedSingle() {
+		for (int i = 0; i < CELLS; i++) {
+			if (grid[i] != 0) continue;
+			int c = cand[i];
+			if (c == 0) return -1;
+			if ((c & (c - 1)) == 0) {
+				placedUnit = -1;
+				place(i, c);
+				return 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * nakedSubset
+	 * if n squares of a unit have only n candidates between them, those
+	 * values are removed from the other squares of the unit
+	 * @param n 2 for pairs, 3 for triples
+	 * @return boolean true if any candidate was removed
+	 */
+	private boolean nakedSubset(int n) {
+		for (int u = 0; u < UNITS_COUNT; u++) {
+			int m = 0;
+			for (int k = 0; k < SIZE; k++) {
+				int c = cand[UNITS[u*SIZE + k]];
+				int bits = Integer.bitCount(c);
+				if (bits >= 2 && bits <= n) {
+					members[m] = k;
+					memberMask[m++] = c;
+				}
+			}
+			for (int a = 0; a < m; a++) {
+				for (int b = a + 1; b < m; b++) {
+					int union = memberMask[a] | memberMask[b];
+					int inside = 1 << members[a] | 1 << members[b];
+					if (n == 2) {
+						if (Integer.bitCount(union) == 2 && clearUnit(u, inside, union)) return true;
+						continue;
+					}
+					for (int c = b + 1; c < m; c++) {
+						int union3 = union | memberMask[c];
+						if (Integer.bitCount(union3) == 3
+								&& clearUnit(u, inside | 1 << members[c], union3)) return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * clearUnit
+	 * removes candidates from the squares of a unit
+	 * @param u the unit
+	 * @param keep the positions in the unit that are left alone, bit k
+	 * for the k:th square of the unit
+	 * @param bits the candidates to remove
+	 * @return boolean true if any candidate was removed
+	 */
+	private boolean clearUnit(int u, int keep, int bits) {
+		boolean removed = false;
+		for (int k = 0; k < SIZE; k++) {
+			int i = UNITS[u*SIZE + k];
+			if ((keep & 1 << k) == 0 && (cand[i] & bits) != 0) {
+				cand[i] &= ~bits;
+				removed = true;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * hiddenSubset
+	 * if n values of a unit have only n squares left between them, the
+	 * other candidates are removed from those squares
+	 * @param n 2 for pairs, 3 for triples
+	 * @return boolean true if any candidate was removed
+	 */
+	private boolean hiddenSubset(int n) {
+		for (int u = 0; u < UNITS_COUNT; u++) {
+			int m = 0;
+			for (int v = 1; v <= SIZE; v++) {
+				int where = places(u, 1 << v);
+				int bits = Integer.bitCount(where);
+				if (bits >= 2 && bits <= n) {
+					members[m] = v;
+					memberMask[m++] = where;
+				}
+			}
+			for (int a = 0; a < m; a++) {
+				for (int b = a + 1; b < m; b++) {
+					int union = memberMask[a] | memberMask[b];
+					int values = 1 << members[a] | 1 << members[b];
+					if (n == 2) {
+						if (Integer.bitCount(union) == 2 && keepOnly(u, union, values)) return true;
+						continue;
+					}
+					for (int c = b + 1; c < m; c++) {
+						int union3 = union | memberMask[c];
+						if (Integer.bitCount(union3) == 3
+								&& keepOnly(u, union3, values | 1 << members[c])) return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * places
+	 * @param u a unit
+	 * @param bit a value as a mask bit
+	 * @return the positions in the unit where the value is a candidate,
+	 * bit k for the k:th square of the unit
+	 */
+	private int places(int u, int bit) {
+		int where = 0;
+		for (int k = 0; k < SIZE; k++) {
+			if ((cand[UNITS[u*SIZE + k]] & bit) != 0) where |= 1 << k;
+		}
+		return where;
+	}
+
+	/**
+	 * keepOnly
+	 * removes every candidate but some values from some squares of a unit
+	 * @return boolean true if any candidate was removed
+	 */
+	private boolean keepOnly(int u, int where, int values) {
+		boolean removed = false;
+		for (int k = 0; k < SIZE; k++) {
+			int i = UNITS[u*SIZE + k];
+			if ((where & 1 << k) != 0 && (cand[i] & ~values) != 0) {
+				cand[i] &= values;
+				removed = true;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * lockedCandidates
+	 * if the candidates of a value in a block all lie in one row or
+	 * column they are removed from the rest of it (pointing), and if the
+	 * candidates of a value in a row or column lie in one block they are
+	 * removed from the rest of the block (box-line)
+	 * @param from the first unit to look at, 18 for blocks, 0 for rows
+	 * and columns
+	 * @param to the unit after the last one to look at
+	 * @return boolean true if any candidate was removed
+	 */
+	private boolean lockedCandidates(int from, int to) {
+		for (int u = from; u < to; u++) {
+			for (int v = 1; v <= SIZE; v++) {
+				int bit = 1 << v;
+				int rows = 0, cols = 0, blocks = 0;
+				for (int k = u*SIZE; k < (u+1)*SIZE; k++) {
+					int i = UNITS[k];
+					if ((cand[i] & bit) != 0) {
+						rows |= 1 << ROW[i];
+						cols |= 1 << COL[i];
+						blocks |= 1 << BLOCK[i];
+					}
+				}
+				if (rows == 0) continue;
+				if (u >= 2*SIZE) {
+					if (Integer.bitCount(rows) == 1
+							&& eliminate(Integer.numberOfTrailingZeros(rows), u, bit)) return true;
+					if (Integer.bitCount(cols) == 1
+							&& eliminate(SIZE + Integer.numberOfTrailingZeros(cols), u, bit)) return true;
+				} else if (Integer.bitCount(blocks) == 1
+						&& eliminate(2*SIZE + Integer.numberOfTrailingZeros(blocks), u, bit)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * eliminate
+	 * removes a candidate from the squares of one unit that are not
+	 * also in another unit
+	 * @param target the unit to remove from
+	 * @param keep the unit whose squares are left alone
+	 * @param bit the value as a mask bit
+	 * @return boolean true if any candidate was removed
+	 */
+	private boolean eliminate(int target, int keep, int bit) {
+		boolean removed = false;
+		for (int k = target*SIZE; k < (target+1)*SIZE; k++) {
+			int i = UNITS[k];
+			if ((cand[i] & bit) != 0 && !inUnit(i, keep)) {
+				cand[i] &= ~bit;
+				removed = true;
+			}
+		}
+		return removed;
+	}
+
+	private static boolean inUnit(int cell, int u) {
+		return u < SIZE ? ROW[cell] == u
+				: u < 2*SIZE ? COL[cell] == u - SIZE : BLOCK[cell] == u - 2*SIZE;
+	}
+
+	/**
+	 * fish
+	 * if the candidates of a value in n rows lie in n columns, the value
+	 * is removed from the rest of those columns, and the same with rows
+	 * and columns swapped. The k:th square of row r is in column k and the
+	 * k:th square of column c is in row k, so the positions of a value in
+	 * one line are the lines crossing it.
+	 * @param n 2 for X-wing, 3 for swordfish
+	 * @return boolean true if any candidate was removed
+	 */
+	private boolean fish(int n) {
+		for (int v = 1; v <= SIZE; v++) {
+			int bit = 1 << v;
+			for (int base = 0; base < 2*SIZE; base += SIZE) {
+				int cover = SIZE - base;
+				int m = 0;
+				for (int line = 0; line < SIZE; line++) {
+					int where = places(base + line, bit);
+					int bits = Integer.bitCount(where);
+					if (bits >= 2 && bits <= n) {
+						members[m] = line;
+						memberMask[m++] = where;
+					}
+				}
+				for (int a = 0; a < m; a++) {
+					for (int b = a + 1; b < m; b++) {
+						int union = memberMask[a] | memberMask[b];
+						int lines = 1 << members[a] | 1 << members[b];
+						if (n == 2) {
+							if (Integer.bitCount(union) == 2 && clearLines(cover, union, lines, bit))
+								return true;
+							continue;
+						}
+						for (int c = b + 1; c < m; c++) {
+							int union3 = union | memberMask[c];
+							if (Integer.bitCount(union3) == 3
+									&& clearLines(cover, union3, lines | 1 << members[c], bit))
+								return true;
+						}
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * clearLines
+	 * removes a value from some rows or columns except where they cross
+	 * other lines
+	 * @param cover 0 for rows, 9 for columns
+	 * @param targets the lines to remove from, bit k for line k
+	 * @param keep the crossing lines whose squares are left alone
+	 * @param bit the value as a mask bit
+	 * @return boolean true if any candidate was removed
+	 */
+	private boolean clearLines(int cover, int targets, int keep, int bit) {
+		boolean removed = false;
+		for (int line = 0; line < SIZE; line++) {
+			if ((targets & 1 << line) != 0 && clearUnit(cover + line, keep, bit)) removed = true;
+		}
+		return removed;
+	}
+
+	/**
+	 * xyWing
+	 * a square with the candidates xy seeing a square with xz and one
+	 * with yz: whichever value the first square gets, one of the other
+	 * two is z, so z is removed from every square seeing both of them
+	 * @return boolean true if any candidate was removed
+	 */
+	private boolean xyWing() {
+		for (int p = 0; p < CELLS; p++) {
+			int pivot = cand[p];
+			if (Integer.bitCount(pivot) != 2) continue;
+			for (int ka = p*20; ka < (p+1)*20; ka++) {
+				int a = PEERS[ka];
+				int ca = cand[a];
+				if (Integer.bitCount(ca) != 2 || Integer.bitCount(ca & pivot) != 1) continue;
+				int z = ca & ~pivot;
+				int wanted = (pivot & ~ca) | z;
+				for (int kb = ka + 1; kb < (p+1)*20; kb++) {
+					int b = PEERS[kb];
+					if (cand[b] != wanted) continue;
+					boolean removed = false;
+					for (int k = a*20; k < (a+1)*20; k++) {
+						int i = PEERS[k];
+						if (i != b && (cand[i] & z) != 0 && sees(i, b)) {
+							cand[i] &= ~z;
+							removed = true;
+						}
+					}
+					if (removed) return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	private static boolean sees(int i, int j) {
+		return ROW[i] == ROW[j] || COL[i] == COL[j] || BLOCK[i] == BLOCK[j];
+	}
+
+	/**
+	 * chain
+	 * tries the candidates of the squares with the fewest candidates
+	 * first: a candidate is placed and singles are followed from it, and
+	 * if that ends in a square or a value with no place left, the
+	 * candidate is removed
+	 * @return boolean true if any candidate was removed
+	 */
+	private boolean chain() {
+		int savedEmpty = empty;
+		System.arraycopy(grid, 0, savedGrid, 0, CELLS);
+		System.arraycopy(cand, 0, savedCand, 0, CELLS);
+		for (int bits = 2; bits <= SIZE; bits++) {
+			for (int i = 0; i < CELLS; i++) {
+				if (Integer.bitCount(savedCand[i]) != bits) continue;
+				for (int c = savedCand[i]; c != 0; c &= c - 1) {
+					int bit = c & -c;
+					place(i, bit);
+					boolean broken = !singles();
+					System.arraycopy(savedGrid, 0, grid, 0, CELLS);
+					System.arraycopy(savedCand, 0, cand, 0, CELLS);
+					empty = savedEmpty;
+					if (broken) {
+						cand[i] &= ~bit;
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * singles
+	 * applies singles until none is left
+	 * @return boolean false if a contradiction was found
+	 */
+	private boolean singles() {
+		while (empty > 0) {
+			int r = hiddenSingle();
+			if (r == 0) r = nakedSingle();
+			if (r < 0) return false;
+			if (r == 0) return true;
+		}
+		return true;
+	}
+
+	private void place(int cell, int bit) {
+		placedCell = cell;
+		grid[cell] = Integer.numberOfTrailingZeros(bit);
+		cand[cell] = 0;
+		empty--;
+		removeFromPeers(cell, bit);
+	}
+
+	private void removeFromPeers(int cell, int bit) {
+		for (int k = cell*20, end = k+20; k < end; k++) {
+			cand[PEERS[k]] &= ~bit;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Class Hint
+ * the next square that can be filled by logic and why: the single that
+ * fills it, the unit it is hidden in, and the hardest technique that was
+ * needed to get there.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class Hint {
+
+	private final int row;
+	private final int col;
+	private final int value;
+	private final DifficultyGrader.Technique technique;
+	private final int unit;
+	private final DifficultyGrader.Technique hardest;
+
+	/**
+	 * constructor for a Hint
+	 * @param cell the index of the square, row*9 + column
+	 * @param value the value of the square
+	 * @param technique NAKED_SINGLE or HIDDEN_SINGLE
+	 * @param unit for a hidden single the unit it is hidden in, 0-8 for
+	 * rows, 9-17 for columns and 18-26 for blocks, otherwise -1
+	 * @param hardest the hardest technique used to find the hint
+	 */
+	public Hint(int cell, int value, DifficultyGrader.Technique technique, int unit,
+				DifficultyGrader.Technique hardest) {
+		this.row = cell/9;
+		this.col = cell%9;
+		this.value = value;
+		this.technique = technique;
+		this.unit = unit;
+		this.hardest = hardest;
+	}
+
+	public int getRow() {
+		return row;
+	}
+
+	public int getCol() {
+		return col;
+	}
+
+	public int getValue() {
+		return value;
+	}
+
+	/**
+	 * getTechnique
+	 * @return the single that fills the square
+	 */
+	public DifficultyGrader.Technique getTechnique() {
+		return technique;
+	}
+
+	/**
+	 * getUnit
+	 * @return the unit of a hidden single, 0-8 for rows, 9-17 for columns
+	 * and 18-26 for blocks, otherwise -1
+	 */
+	public int getUnit() {
+		return unit;
+	}
+
+	/**
+	 * getHardest
+	 * @return the hardest technique needed, the single itself if no
+	 * candidates had to be removed first
+	 */
+	public DifficultyGrader.Technique getHardest() {
+		return hardest;
+	}
+
+	/**
+	 * getReason
+	 * @return why the square gets its value, in words
+	 */
+	public String getReason() {
+		String reason;
+		if (unit < 0) {
+			reason = value + " is the only value left for this square";
+		} else {
+			String[] kinds = {"row", "column", "block"};
+			reason = "this is the only place for " + value + " in "
+						+ kinds[unit/9] + " " + (unit%9 + 1);
+		}
+		if (hardest != technique)
+			reason += " after " + hardest.name().toLowerCase().replace('_', ' ');
+		return reason;
+	}
+
+	@Override
+	public String toString() {
+		return "(" + (row + 1) + "," + (col + 1) + ") = " + value + ": " + getReason();
+	}
+}
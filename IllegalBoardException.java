@@ -0,0 +1,33 @@
+/**
+ * Class IllegalBoardException
+ * thrown when a whole board is loaded and some of its values are
+ * duplicated in a row, column or block. It lists every square that takes
+ * part in a duplication, not just the first one found.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class IllegalBoardException extends IllegalArgumentException {
+
+	private static final long serialVersionUID = 1L;
+	private final int[] conflicts;
+
+	/**
+	 * constructor for an IllegalBoardException
+	 * @param conflicts the indexes (row*9 + column) of the conflicting
+	 * squares in increasing order
+	 */
+	public IllegalBoardException(int[] conflicts) {
+		super("Not allowed to put duplicate numbers in rows, columns or block ("
+								+ conflicts.length + " conflicting squares)");
+		this.conflicts = conflicts.clone();
+	}
+
+	/**
+	 * getConflicts
+	 * @return the indexes (row*9 + column) of the conflicting squares
+	 */
+	public int[] getConflicts() {
+		return conflicts.clone();
+	}
+}
@@ -0,0 +1,354 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+/**
+ * Class MappedCorpus
+ * random access to a large file of puzzles through memory mapping. Two
+ * formats are read:
+ *   text    one puzzle per line, 81 characters where 1-9 are clues and
+ *           anything else is empty, lines shorter than 81 are skipped
+ *   packed  a PackedCorpus file
+ * Puzzles are decoded straight from the mapped memory into the caller's
+ * array, so nothing is allocated per puzzle. The file is mapped in
+ * overlapping chunks of 1 GB, which lets files larger than 2 GB be read
+ * while every record still lies inside one chunk.
+ *
+ * Opening a text file reads all of it once, split in segments that are
+ * scanned in bulk on the common fork/join pool: a file of lines that all
+ * have 81 characters is then read by position, any other is indexed
+ * with the start of every puzzle line, 8 bytes of heap per puzzle and
+ * at most Integer.MAX_VALUE - 8 puzzles.
+ *
+ * All reads are absolute, so one MappedCorpus can be shared by any
+ * number of threads.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class MappedCorpus implements Closeable {
+
+	/**
+	 * Interface PuzzleConsumer
+	 * receives the puzzles of a scan. The array is reused for the next
+	 * puzzle of the same thread, copy it to keep it.
+	 */
+	public interface PuzzleConsumer {
+		void accept(long index, int[] cells);
+	}
+
+	private static final int CELLS = 81;
+	private static final long CHUNK = 1L << 30;
+	private static final int OVERLAP = 4096; // longer than any record
+	// the text is scanned in segments of this size, which divides CHUNK
+	private static final long SEGMENT = 1L << 24;
+	private static final int BUFFER = 1 << 16;
+	private static final int MAX_LINES = Integer.MAX_VALUE - 8;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer[] chunks;
+	private final boolean packed;
+	private final long count;
+	// text with lines of the same length: record i starts at i*stride
+	private final long stride;
+	// text with lines of different length: start of every puzzle line
+	private final long[] lineOffsets;
+	// packed: where the index of record offsets starts
+	private final long indexOffset;
+
+	/**
+	 * constructor for a MappedCorpus
+	 * @param file a text or PackedCorpus file
+	 * @throws IOException if the file can not be mapped or a packed
+	 * file has a wrong header
+	 */
+	public MappedCorpus(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			chunks = new MappedByteBuffer[(int) ((size + CHUNK - 1)/CHUNK)];
+			for (int k = 0; k < chunks.length; k++) {
+				long start = k*CHUNK;
+				chunks[k] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+										Math.min(CHUNK + OVERLAP, size - start));
+			}
+			packed = size >= PackedCorpus.HEADER_BYTES && getInt(0) == PackedCorpus.MAGIC;
+			if (packed) {
+				if (getInt(4) != PackedCorpus.VERSION)
+					throw new IOException("unknown packed corpus version in " + file);
+				count = getLong(8);
+				indexOffset = getLong(16);
+				stride = 0;
+				lineOffsets = null;
+			} else {
+				indexOffset = 0;
+				long fixed = fixedStride(size);
+				if (fixed > 0) {
+					stride = fixed;
+					count = (size + fixed - 1)/fixed;
+					lineOffsets = null;
+				} else {
+					stride = 0;
+					lineOffsets = indexLines(size);
+					count = lineOffsets.length;
+				}
+			}
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * size
+	 * @return the number of puzzles
+	 */
+	public long size() {
+		return count;
+	}
+
+	/**
+	 * get
+	 * decodes one puzzle without allocating anything
+	 * @param index the puzzle number, from 0
+	 * @param cells where the 81 values are written, 0 for empty
+	 */
+	public void get(long index, int[] cells) {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("puzzle " + index + " of " + count);
+		long pos = offset(index);
+		ByteBuffer chunk = chunks[(int) (pos/CHUNK)];
+		int p = (int) (pos%CHUNK);
+		if (packed) {
+			int nibbles = 0;
+			int data = p + BoardCodec.MASK_BYTES;
+			for (int i = 0; i < CELLS; i++) {
+				if ((chunk.get(p + i/8) & (0x80 >>> (i%8))) == 0) {
+					cells[i] = 0;
+				} else {
+					int b = chunk.get(data + nibbles/2);
+					cells[i] = (nibbles%2 == 0) ? (b >> 4) & 0xF : b & 0xF;
+					nibbles++;
+				}
+			}
+		} else {
+			for (int i = 0; i < CELLS; i++) {
+				int c = chunk.get(p + i);
+				cells[i] = (c >= '1' && c <= '9') ? c - '0' : 0;
+			}
+		}
+	}
+
+	/**
+	 * view
+	 * @param index the puzzle number, from 0
+	 * @return a read-only view of the raw bytes of one puzzle in the
+	 * mapped file, 81 characters for text or a BoardCodec givens record
+	 * for packed files. The bytes are not copied.
+	 */
+	public ByteBuffer view(long index) {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("puzzle " + index + " of " + count);
+		long pos = offset(index);
+		ByteBuffer b = chunks[(int) (pos/CHUNK)].asReadOnlyBuffer();
+		int p = (int) (pos%CHUNK);
+		int len = CELLS;
+		if (packed) {
+			int givens = 0;
+			for (int k = 0; k < BoardCodec.MASK_BYTES; k++)
+				givens += Integer.bitCount(b.get(p + k) & 0xFF);
+			len = BoardCodec.MASK_BYTES + (givens + 1)/2;
+		}
+		b.position(p).limit(p + len);
+		return b.slice();
+	}
+
+	/**
+	 * scan
+	 * hands the puzzles from one index up to another to a consumer,
+	 * in order, on the calling thread
+	 * @param from the first puzzle
+	 * @param to the puzzle after the last one
+	 * @param consumer receives every puzzle
+	 */
+	public void scan(long from, long to, PuzzleConsumer consumer) {
+		int[] cells = new int[CELLS];
+		for (long i = from; i < to; i++) {
+			get(i, cells);
+			consumer.accept(i, cells);
+		}
+	}
+
+	/**
+	 * parallelScan
+	 * splits the corpus into partitions of consecutive puzzles and scans
+	 * them on the common fork/join pool
+	 * @param partitions the number of partitions, for example a few
+	 * per core
+	 * @param consumer receives every puzzle, it is called from several
+	 * threads at once
+	 */
+	public void parallelScan(int partitions, PuzzleConsumer consumer) {
+		long n = Math.max(1, Math.min(partitions, count));
+		LongStream.range(0, n).parallel()
+				.forEach(k -> scan(count*k/n, count*(k + 1)/n, consumer));
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private long offset(long index) {
+		if (packed) return getLong(indexOffset + 8*index);
+		if (lineOffsets != null) return lineOffsets[(int) index];
+		return index*stride;
+	}
+
+	private int getInt(long pos) {
+		return chunks[(int) (pos/CHUNK)].getInt((int) (pos%CHUNK));
+	}
+
+	private long getLong(long pos) {
+		return chunks[(int) (pos/CHUNK)].getLong((int) (pos%CHUNK));
+	}
+
+	private byte getByte(long pos) {
+		return chunks[(int) (pos/CHUNK)].get((int) (pos%CHUNK));
+	}
+
+	/**
+	 * read
+	 * copies bytes of the file, which must not cross the start of a chunk
+	 */
+	private void read(long pos, byte[] dst, int len) {
+		ByteBuffer b = chunks[(int) (pos/CHUNK)].duplicate();
+		b.position((int) (pos%CHUNK));
+		b.get(dst, 0, len);
+	}
+
+	/**
+	 * fixedStride
+	 * checks if the file is lines of exactly 81 characters ended by \n
+	 * or \r\n, where the last line end may be missing. Every byte is
+	 * looked at, since a single shorter or longer line would shift all
+	 * the records after it.
+	 * @return the line length including the line end, or 0
+	 */
+	private long fixedStride(long size) {
+		if (size < CELLS) return 0;
+		long s;
+		if (size == CELLS || getByte(CELLS) == '\n') s = CELLS + 1;
+		else if (size > CELLS + 1 && getByte(CELLS) == '\r' && getByte(CELLS + 1) == '\n') s = CELLS + 2;
+		else return 0;
+		if (size%s != 0 && size%s != CELLS) return 0;
+		long segments = (size + SEGMENT - 1)/SEGMENT;
+		boolean fixed = LongStream.range(0, segments).parallel()
+				.allMatch(k -> fixedLines(k*SEGMENT, Math.min(size, (k + 1)*SEGMENT), (int) s));
+		return fixed ? s : 0;
+	}
+
+	/**
+	 * fixedLines
+	 * @return boolean true if from one position up to another there is
+	 * a \n exactly at the end of every line of s bytes, and a \r before
+	 * it if s is 83
+	 */
+	private boolean fixedLines(long from, long to, int s) {
+		byte[] buf = new byte[(int) Math.min(BUFFER, to - from)];
+		int phase = (int) (from%s);
+		for (long pos = from; pos < to; ) {
+			int len = (int) Math.min(buf.length, to - pos);
+			read(pos, buf, len);
+			for (int k = 0; k < len; k++) {
+				byte c = buf[k];
+				if (phase == s - 1) {
+					if (c != '\n') return false;
+				} else if (c == '\n' || (phase == CELLS && c != '\r')) {
+					return false;
+				}
+				if (++phase == s) phase = 0;
+			}
+			pos += len;
+		}
+		return true;
+	}
+
+	/**
+	 * indexLines
+	 * @return the start of every line with at least 81 characters
+	 * @throws IOException if there are more than MAX_LINES of them
+	 */
+	private long[] indexLines(long size) throws IOException {
+		long segments = (size + SEGMENT - 1)/SEGMENT;
+		long[][] parts = LongStream.range(0, segments).parallel()
+				.mapToObj(k -> lineStarts(k*SEGMENT, Math.min(size, (k + 1)*SEGMENT), size))
+				.toArray(long[][]::new);
+		long n = 0;
+		for (long[] part : parts) n += part.length - 1;
+		if (n > MAX_LINES)
+			throw new IOException("more than " + MAX_LINES + " puzzles in a text file with lines of different length");
+		long[] offsets = new long[(int) n];
+		int at = 0;
+		for (long[] part : parts) {
+			int len = (int) part[part.length - 1];
+			System.arraycopy(part, 0, offsets, at, len);
+			at += len;
+		}
+		return offsets;
+	}
+
+	/**
+	 * lineStarts
+	 * finds the puzzle lines that start from one position up to another,
+	 * the last of them may end after it
+	 * @return the starts of the lines, followed by their number
+	 */
+	private long[] lineStarts(long from, long to, long size) {
+		long[] starts = new long[1024];
+		int n = 0;
+		// -1 while the line at from started before it
+		long start = (from == 0 || getByte(from - 1) == '\n') ? from : -1;
+		byte[] buf = new byte[(int) Math.min(BUFFER, to - from)];
+		for (long pos = from; pos < to; ) {
+			int len = (int) Math.min(buf.length, to - pos);
+			read(pos, buf, len);
+			for (int k = 0; k < len; k++) {
+				if (buf[k] != '\n') continue;
+				long end = pos + k;
+				if (start >= 0 && isPuzzleLine(start, end)) {
+					if (n >= starts.length - 2) starts = Arrays.copyOf(starts, 2*starts.length);
+					starts[n++] = start;
+				}
+				start = end + 1;
+			}
+			pos += len;
+		}
+		if (start >= 0 && start < to) {
+			// the line runs on into the next segment, it only has to be long enough
+			long end = to;
+			while (end < size && end <= start + CELLS && getByte(end) != '\n') end++;
+			if (isPuzzleLine(start, end)) starts[n++] = start;
+		}
+		starts[n] = n;
+		return Arrays.copyOf(starts, n + 1);
+	}
+
+	/**
+	 * isPuzzleLine
+	 * @param start the first character of a line
+	 * @param end the line end, or any position after the 82nd character
+	 * @return boolean true if the line has at least 81 characters
+	 * without a \r at its end
+	 */
+	private boolean isPuzzleLine(long start, long end) {
+		long len = end - start;
+		return len > CELLS || (len == CELLS && getByte(end - 1) != '\r');
+	}
+}
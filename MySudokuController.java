@@ -1,5 +1,8 @@
 import java.awt.event.*;
 import java.io.*;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
 import javax.swing.*;
 
 /**
@@ -13,9 +16,12 @@ public class MySudokuController extends JPanel
 				implements SudokuController,ActionListener {
 
 	private static final long serialVersionUID = 1L; // It complains otherwise
-	JButton undo, redo;
+	JButton undo, redo, cancel;
+	JProgressBar progress;
 	SudokuModel model;
 	JMenuBar menuBar;
+	private SolverWorker<?> running; // the background work, null if there is none
+	private boolean actionWasEnabled;
 	
 	/**
 	 * Constructor for creating a new MySudokuController object
@@ -31,6 +37,11 @@ public class MySudokuController extends JPanel
 		// create all buttons/menuitems
 		undo = new JButton("Undo");
 		redo = new JButton("Redo");
+		cancel = new JButton("Cancel");
+		progress = new JProgressBar();
+		progress.setStringPainted(true);
+		progress.setString("");
+		cancel.setEnabled(false);
 		
 		JMenu fileMenu = new JMenu("File");
 		JMenu actionMenu = new JMenu("Action");
@@ -54,6 +65,8 @@ public class MySudokuController extends JPanel
 		// Add all the buttons to respective component
 		add(undo);
 		add(redo);
+		add(progress);
+		add(cancel);
 		
 		menuBar.add(fileMenu);
 		menuBar.add(actionMenu);
@@ -81,34 +94,167 @@ public class MySudokuController extends JPanel
 		undo.addActionListener(e -> ((MySudokuModel) model).undo());
 		redo.addActionListener(e -> ((MySudokuModel) model).redo());
 		
-		compareSolution.addActionListener(e -> ((MySudokuModel) model).checkWrong());
+		compareSolution.addActionListener(e -> withSolution(() -> ((MySudokuModel) model).checkWrong()));
 		
 		openMenuItem.addActionListener(e -> openFromFile());
 		easy.addActionListener(e -> generate(MySudokuModel.Difficulty.EASY));
 		hard.addActionListener(e -> generate(MySudokuModel.Difficulty.HARD));
 		saveMenuItem.addActionListener(e -> save());
 		exitMenuItem.addActionListener(e -> System.exit(0));
-		solveMenuItem.addActionListener(e -> model.solve());
-		removeWrongMenuItem.addActionListener(e -> ((MySudokuModel) model).removeWrong());
-		makeSolvableMenuItem.addActionListener(e -> ((MySudokuModel) model).makeSolvable());
+		cancel.addActionListener(e -> {
+			if (running != null) running.stop();
+		});
+		solveMenuItem.addActionListener(e -> runInBackground("Solving",
+				(work, budget) -> work.solve(budget),
+				(work, res) -> {
+					if (res.getStatus() == SolveResult.Status.SOLVED)
+						((MySudokuModel) model).adopt(work, "setBoardStr");
+				}));
+		removeWrongMenuItem.addActionListener(e -> withSolution(() -> ((MySudokuModel) model).removeWrong()));
+		makeSolvableMenuItem.addActionListener(e -> runInBackground("Making solvable",
+				(work, budget) -> work.makeSolvable(budget),
+				(work, done) -> ((MySudokuModel) model).adopt(work, "rollback")));
 		resetMenuItem.addActionListener(e -> ((MySudokuModel) model).reset() );
-		findLowest.addActionListener(e -> ((MySudokuModel) model).betterHintFunction() );
+		findLowest.addActionListener(e -> withSolution(() -> ((MySudokuModel) model).betterHintFunction()));
 	
 		clearMenuItem.addActionListener(e ->  {	model.clear();
 												setActionEnabled(false);
 												});
 
-		testMenuItem.addActionListener(e -> {
-			int nbrsolutions = ((MySudokuModel) model).uniqueSolutions();
-			JOptionPane.showMessageDialog(MySudokuController.this,
+		testMenuItem.addActionListener(e -> runInBackground("Counting solutions",
+				(work, budget) -> work.uniqueSolutions(budget).getSolutions(),
+				(work, nbrsolutions) -> JOptionPane.showMessageDialog(MySudokuController.this,
 					"From this point the sudoku has " +
 					((nbrsolutions > 10) ? "more than 10" :  nbrsolutions) +
-					" solutions");
-		});
+					" solutions")));
+		
+		// solve the givens in the background after every load, so the hints
+		// and checks do not have to
+		((MySudokuModel) model).setPrecompute(true);
+	}
+	
+	/**
+	 * class SolverWorker
+	 * runs solver work on a copy of the model in the background, with a
+	 * SolveBudget that the cancel button cancels. The searches of the
+	 * model look at the budget, so cancelled work stops soon, and the
+	 * worker counts as running until it has. The result is handed to the
+	 * event dispatch thread, where it may be adopted by the model, unless
+	 * the work was cancelled. The progress propertychanges of the copy
+	 * are passed on as the progress of the SwingWorker, which is
+	 * delivered on the event dispatch thread.
+	 */
+	private class SolverWorker<T> extends SwingWorker<T, Void> {
+		private final MySudokuModel work;
+		private final SolveBudget budget = new SolveBudget();
+		private final BiFunction<MySudokuModel, SolveBudget, T> task;
+		private final BiConsumer<MySudokuModel, T> done;
 		
+		SolverWorker(BiFunction<MySudokuModel, SolveBudget, T> task, BiConsumer<MySudokuModel, T> done) {
+			this.work = new MySudokuModel((MySudokuModel) model);
+			this.task = task;
+			this.done = done;
+			work.addPropertyChangeListener(evt -> {
+				if ("progress".equals(evt.getPropertyName()))
+					setProgress((Integer) evt.getNewValue());
+			});
+		}
 		
+		/**
+		 * stop
+		 * cancels the budget of the work, its result will be thrown away
+		 */
+		void stop() {
+			budget.cancel();
+			progress.setString("Cancelling");
+			cancel.setEnabled(false);
+		}
 		
+		@Override
+		protected T doInBackground() {
+			return task.apply(work, budget);
+		}
 		
+		@Override
+		protected void done() {
+			if (running == this) running = null;
+			setBusy(null);
+			if (budget.isCancelled()) return;
+			try {
+				done.accept(work, get());
+			} catch (InterruptedException | ExecutionException e) {
+				JOptionPane.showMessageDialog(MySudokuController.this,
+						"Something went wrong: " + e.getCause());
+			}
+		}
+	}
+	
+	/**
+	 * runInBackground
+	 * starts solver work on a copy of the model. The menus and the
+	 * board do not take input until the work is done or cancelled.
+	 * Only one piece of work runs at a time.
+	 * @param name what is shown in the progress bar
+	 * @param task the work, run on a background thread with the copy
+	 * and the budget that cancel cancels
+	 * @param done gets the copy and the result on the event dispatch thread
+	 */
+	private <T> void runInBackground(String name, BiFunction<MySudokuModel, SolveBudget, T> task,
+										BiConsumer<MySudokuModel, T> done) {
+		if (running != null) return;
+		SolverWorker<T> worker = new SolverWorker<T>(task, done);
+		worker.addPropertyChangeListener(evt -> {
+			if ("progress".equals(evt.getPropertyName()) && running == worker) {
+				progress.setIndeterminate(false);
+				progress.setValue((Integer) evt.getNewValue());
+			}
+		});
+		running = worker;
+		setBusy(name);
+		worker.execute();
+	}
+	
+	/**
+	 * withSolution
+	 * runs an action that needs the solution of the givens, such as
+	 * checkWrong, removeWrong and the hints. If the solution is not
+	 * cached yet it is found by background work first, so the event
+	 * dispatch thread never waits for it.
+	 * @param action run on the event dispatch thread
+	 */
+	private void withSolution(Runnable action) {
+		MySudokuModel m = (MySudokuModel) model;
+		if (m.hasSolution()) {
+			action.run();
+		} else {
+			runInBackground("Solving", (work, budget) -> work.prepareSolution(budget),
+					(work, ready) -> {
+						m.adoptSolution(work);
+						action.run();
+					});
+		}
+	}
+	
+	/**
+	 * setBusy
+	 * shows or hides the progress and turns the menus on and off
+	 * @param name what is being done, null when nothing is
+	 */
+	private void setBusy(String name) {
+		boolean busy = name != null;
+		progress.setIndeterminate(busy);
+		progress.setValue(0);
+		progress.setString(busy ? name : "");
+		cancel.setEnabled(busy);
+		undo.setEnabled(!busy);
+		redo.setEnabled(!busy);
+		menuBar.getMenu(0).setEnabled(!busy);
+		if (busy) {
+			actionWasEnabled = menuBar.getMenu(1).isEnabled();
+			menuBar.getMenu(1).setEnabled(false);
+		} else {
+			menuBar.getMenu(1).setEnabled(actionWasEnabled);
+		}
 	}
 	
 	/**
@@ -117,7 +263,11 @@ public class MySudokuController extends JPanel
 	 * @param a true is enabled, false is disabled
 	 */
 	private void setActionEnabled(boolean a) {
-		MySudokuController.this.menuBar.getMenu(1).setEnabled(a);
+		if (running != null) {
+			actionWasEnabled = a;
+		} else {
+			MySudokuController.this.menuBar.getMenu(1).setEnabled(a);
+		}
 	}
 	
 	/**
@@ -127,12 +277,16 @@ public class MySudokuController extends JPanel
 	 * @param col the column you want to set int the model
 	 * @param value the value you want to set in the model.
 	 * @return boolean value that is true if setBoard was successful
-	 * and false if an exception was thrown by parseInt or setBoard.
+	 * and false if the character is not a value of the board or an
+	 * exception was thrown by setBoard.
 	 */
 	@Override
 	public boolean input(int row, int col, char value) {
+		if (running != null) return false; // the model is being worked on
 		try {
-			model.setBoard(row, col, Integer.parseInt(Character.toString(value)));
+			int val = BoardFormat.value(value, model.getGeometry().size);
+			if (val == 0 && value != '0') return false;
+			model.setBoard(row, col, val);
 			return true;
 		} catch (Exception e) {
 			return false;
@@ -171,25 +325,33 @@ public class MySudokuController extends JPanel
 					 }										// me know.
 					 br.close();
 					 String everything = sb.toString();
-					 model.clear();
 					 model.setBoard(everything);
 					 setActionEnabled(true);
-					 int solutions = ((MySudokuModel) model).uniqueSolutions();
-					 if (solutions == 0) {
-						 model.clear();
-						 setActionEnabled(false);
-						 JOptionPane.showMessageDialog(MySudokuController.this,
-								 						"No solutions");
-					 }
-					 if (solutions>1)
-						 JOptionPane.showMessageDialog(MySudokuController.this,
-								 						"No unique solution");
+					 runInBackground("Counting solutions",
+						 (work, budget) -> work.uniqueSolutions(budget).getSolutions(),
+						 (work, solutions) -> {
+						 if (solutions == 0) {
+							 model.clear();
+							 setActionEnabled(false);
+							 JOptionPane.showMessageDialog(MySudokuController.this,
+									 						"No solutions");
+						 }
+						 if (solutions>1)
+							 JOptionPane.showMessageDialog(MySudokuController.this,
+									 						"No unique solution");
+					 });
 					 
 				} catch (FileNotFoundException ex) {
 					JOptionPane.showMessageDialog(MySudokuController.this,
 														"could not open file");
 				} catch (IOException exIO) {
 					System.out.println("Something went wrong in the filereader");
+				} catch (IllegalBoardException exB) {
+					model.clear();
+					setActionEnabled(false);
+					JOptionPane.showMessageDialog(MySudokuController.this,
+							"Illegal sudoku, " + exB.getConflicts().length
+											+ " squares break the rules");
 				} catch (IllegalArgumentException exI) {
 					model.clear();
 					setActionEnabled(false);
@@ -213,22 +375,28 @@ public class MySudokuController extends JPanel
 		int returnVal = fc.showSaveDialog(null);
         if (returnVal == JFileChooser.APPROVE_OPTION) {
             File file = fc.getSelectedFile();
-            try {
-            FileWriter filewriter = new FileWriter(file);
-            ((MySudokuModel)model).makeSolvable();
-            filewriter.write(model.getBoard());
-            filewriter.close();
-            } catch (IOException e1) {
-            	JOptionPane.showMessageDialog(MySudokuController.this,
+            runInBackground("Making solvable",
+            		(work, budget) -> work.makeSolvable(budget),
+            		(work, done) -> {
+            	((MySudokuModel) model).adopt(work, "rollback");
+            	try {
+            		FileWriter filewriter = new FileWriter(file);
+            		filewriter.write(model.getBoard());
+            		filewriter.close();
+            	} catch (IOException e1) {
+            		JOptionPane.showMessageDialog(MySudokuController.this,
             						"Something went wrong when saving");
-            }
+            	}
+            });
         }
 	}
 	
 	private void generate(MySudokuModel.Difficulty a) {
-		model.clear();
-		((MySudokuModel) model).generate(a);
-		setActionEnabled(true);
+		runInBackground("Generating", (work, budget) -> work.generate(a, budget),
+				(work, done) -> {
+					((MySudokuModel) model).adopt(work, "setBoardStr");
+					setActionEnabled(true);
+				});
 	}
 
 }
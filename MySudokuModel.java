@@ -1,46 +1,379 @@
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
-import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Random;
-import java.util.stream.IntStream;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /**
  * Class MySudokuModel
- * makes up the model of the sudoku
+ * makes up the model of the sudoku. The board is one flat array with a
+ * byte per square, row by row. Copies of it are made with
+ * System.arraycopy, and the snapshots the whole board propertychanges
+ * carry as old value come from a small pool of spare boards, so they
+ * are only valid while the propertychange is delivered.
  * @author Jonas Lecerof
  *
  */
 public class MySudokuModel implements SudokuModel {
 	
-	private int rows=9;
-	private int cols=9;
-	private int[][] sudoku = new int[rows][cols];
-	private int[][] solvedSudoku;
+	private final SudokuGeometry geometry;
+	private final int rows;
+	private final int cols;
+	private final int all; // bit v set for v = 1..rows
+	// the row, column and block of every square, shared by all models of the size
+	private final int[] rowOf;
+	private final int[] colOf;
+	private final int[] blockOf;
+	private byte[] sudoku;	// the board row by row, 0 for empty squares
+	private final int[] scratch;	// the board as ints for the engines, see cells
+	// boards free to be used as snapshots, see snapshot and recycle
+	private final ArrayDeque<byte[]> spareBoards = new ArrayDeque<byte[]>();
+	private static final int MAX_SPARE_BOARDS = 4;
+	// how long a budgeted wait for the solution of the givens sleeps between looks at the budget
+	private static final long WAIT_MILLIS = 20;
+	// the solution of the givens, computed when first needed
+	private CompletableFuture<Solution> givensSolution;
+	private boolean precompute = false;
+	private Supplier<SudokuEngine> engines;
+	private SolverListener solverListener;
+	// bit v is set if the value v is used in that row, column or block
+	private int[] rowMask;
+	private int[] colMask;
+	private int[] blockMask;
 	//private boolean isSolved = false;
 	private int counter = 0;
+	private SudokuEngine solver;
+	private ParallelSolutionCounter parallelCounter;
+	// boards with at least this share of empty squares, in percent, are
+	// counted in parallel: 45 of the 81 squares of a 9x9 board
+	private static final int PARALLEL_EMPTY_PERCENT = 55;
+	private final SplittableRandom random = new SplittableRandom();
+	private final SudokuGenerator generator;
+	private final DifficultyGrader grader = new DifficultyGrader(); // gives the hints
 	private final PropertyChangeSupport pcs = new PropertyChangeSupport(this);
 	
-	public enum Difficulty {EASY, HARD};
+	public enum Difficulty {
+		// easy puzzles are solved with singles, so their ratings are below
+		// the weight of naked pairs, hard ones need naked pairs or more
+		EASY(34, true, 0, DifficultyGrader.Technique.NAKED_PAIR.getWeight() - 1, 67),
+		HARD(25, false, DifficultyGrader.Technique.NAKED_PAIR.getWeight(), Integer.MAX_VALUE, 56);
+		
+		final int clues; // the most clues generate allows on 9x9
+		final boolean atLeast; // also the fewest, easy sudokus have always had 34 clues or more
+		final int minRating; // the band of DifficultyGrader ratings generate aims for
+		final int maxRating;
+		// the share of the squares kept as clues on other sizes, in percent
+		final int cluePercent;
+		
+		Difficulty(int clues, boolean atLeast, int minRating, int maxRating, int cluePercent) {
+			this.clues = clues;
+			this.atLeast = atLeast;
+			this.minRating = minRating;
+			this.maxRating = maxRating;
+			this.cluePercent = cluePercent;
+		}
+		
+		/**
+		 * clues
+		 * @param g the size of the board
+		 * @return the most clues generate allows on that board. Other
+		 * sizes than 9x9 are not graded. They keep cluePercent of their
+		 * squares, a larger share than the 42% and 31% of 9x9, because
+		 * the uniqueness checks of 16x16 and 25x25 boards get slow with
+		 * few clues.
+		 */
+		int clues(SudokuGeometry g) {
+			return (g.size == 9) ? clues : g.cells*cluePercent/100;
+		}
+		
+		/**
+		 * accepts
+		 * @param rating a rating from a DifficultyGrader
+		 * @return boolean true if the rating is in the band of this difficulty
+		 */
+		public boolean accepts(int rating) {
+			return rating >= minRating && rating <= maxRating;
+		}
+	};
 	
 	//  Instance variables related to the history function
-	private LinkedList<Move> moveHistory= new LinkedList<Move>();
-	private int moveHistoryIndex = 0;
+	// moves packed by packMove in a ring buffer, its length a power of 2
+	private int[] moveHistory = new int[64];
+	private int historyHead = 0;		// position of the oldest kept move
+	private int moveHistoryIndex = 0;	// counted from the oldest kept move
 	private int moveHistoryBound = 0;	
+	private int historyLimit = 0;		// 0 keeps every move
+	private boolean historyDropped = false;
+	private byte[] initialBoard; // the board reset goes back to
+	private byte[] historyBase;	 // the board before the oldest kept move
 	
 	public MySudokuModel() {
+		this(SudokuGeometry.STANDARD);
+	}
+	
+	/**
+	 * constructor for a MySudokuModel of any size
+	 * @param geometry the size of the board, for example
+	 * SudokuGeometry.of(4) for 16x16
+	 */
+	public MySudokuModel(SudokuGeometry geometry) {
+		this(geometry, () -> new SudokuSolver(geometry));
+	}
+	
+	/**
+	 * constructor for a MySudokuModel of any size that solves with the
+	 * given engine
+	 * @param geometry the size of the board
+	 * @param engines creates the SudokuEngine used by solve, isSolvable
+	 * and isUnique, for example () -> new DancingLinksSolver(geometry)
+	 * @throws IllegalArgumentException if the engines solve another
+	 * size of board than geometry
+	 */
+	public MySudokuModel(SudokuGeometry geometry, Supplier<SudokuEngine> engines) {
+		this.geometry = geometry;
+		rows = geometry.size;
+		cols = geometry.size;
+		all = geometry.all;
+		rowOf = geometry.row;
+		colOf = geometry.col;
+		blockOf = geometry.block;
+		sudoku = new byte[rows*cols];
+		scratch = new int[rows*cols];
+		rowMask = new int[rows];
+		colMask = new int[cols];
+		blockMask = new int[rows];
+		initialBoard = new byte[rows*cols];
+		historyBase = new byte[rows*cols];
+		generator = new SudokuGenerator(random, geometry);
+		generator.setProgressListener(this::fireProgress);
+		setEngine(engines);
 		clear(); // Initiate to 0 explicitly
 	}
 	
 	/**
-	 * constructor for copying a MySudokuModel object
+	 * constructor for copying a MySudokuModel object. The copy has the
+	 * same board, givens, history and cached solution but engines and
+	 * listeners of its own, so it can be worked on by another thread.
 	 * @param s the MySudokuModel to be copied
 	 */
 	public MySudokuModel(MySudokuModel s) {
-		sudoku = cpyArr(s.sudoku);
+		geometry = s.geometry;
+		rows = s.rows;
+		cols = s.cols;
+		all = s.all;
+		rowOf = s.rowOf;
+		colOf = s.colOf;
+		blockOf = s.blockOf;
+		generator = new SudokuGenerator(random, geometry);
+		generator.setProgressListener(this::fireProgress);
+		sudoku = s.sudoku.clone();
+		scratch = new int[rows*cols];
+		rowMask = Arrays.copyOf(s.rowMask, rows);
+		colMask = Arrays.copyOf(s.colMask, cols);
+		blockMask = Arrays.copyOf(s.blockMask, rows);
+		initialBoard = s.initialBoard.clone();
+		historyBase = s.historyBase.clone();
+		moveHistory = s.moveHistory.clone();
+		historyHead = s.historyHead;
+		moveHistoryIndex = s.moveHistoryIndex;
+		moveHistoryBound = s.moveHistoryBound;
+		historyLimit = s.historyLimit;
+		historyDropped = s.historyDropped;
+		givensSolution = s.givensSolution;
+		precompute = s.precompute;
+		solverListener = s.solverListener;
+		setEngine(s.engines);
+	}
+	
+	/**
+	 * adopt
+	 * takes over the board, givens, history and cached solution of a
+	 * copy that was changed on another thread, then fires one
+	 * propertychange for the whole board. Used to publish the result of
+	 * background work on the event dispatch thread.
+	 * @param work a copy made with MySudokuModel(MySudokuModel)
+	 * @param event the name of the propertychange, setBoardStr if the
+	 * givens changed or rollback if only user inputs did
+	 */
+	void adopt(MySudokuModel work, String event) {
+		byte[] oldsud = sudoku;
+		sudoku = work.sudoku;
+		rowMask = work.rowMask;
+		colMask = work.colMask;
+		blockMask = work.blockMask;
+		counter = work.counter;
+		initialBoard = work.initialBoard;
+		historyBase = work.historyBase;
+		moveHistory = work.moveHistory;
+		historyHead = work.historyHead;
+		moveHistoryIndex = work.moveHistoryIndex;
+		moveHistoryBound = work.moveHistoryBound;
+		historyDropped = work.historyDropped;
+		givensSolution = work.givensSolution;
+		pcs.firePropertyChange(event, oldsud, sudoku);
+		recycle(oldsud);
+	}
+	
+	/**
+	 * class Solution
+	 * a solution of the givens, cached until the givens change
+	 */
+	private static final class Solution {
+		final byte[] cells;	// row by row, null if the givens have no solution
+		final boolean unique;
+		
+		Solution(byte[] cells, boolean unique) {
+			this.cells = cells;
+			this.unique = unique;
+		}
+	}
+	
+	/**
+	 * constructor for a 9x9 MySudokuModel that solves with the given engine
+	 * @param engines creates the SudokuEngine used by solve, isSolvable
+	 * and isUnique, for example DancingLinksSolver::new
+	 * @throws IllegalArgumentException if the engines do not solve 9x9 boards
+	 */
+	public MySudokuModel(Supplier<SudokuEngine> engines) {
+		this(SudokuGeometry.STANDARD, engines);
+	}
+	
+	/**
+	 * setEngine
+	 * chooses the engine that solve, isSolvable, isUnique and
+	 * uniqueSolutions delegate to. One engine is created for the model,
+	 * and the parallel counter makes one for each search it runs at once
+	 * and keeps them until the model is gone.
+	 * @param engines for example SudokuSolver::new or DancingLinksSolver::new
+	 * @throws IllegalArgumentException if the engines solve another size
+	 * of board than the model has
+	 */
+	public void setEngine(Supplier<SudokuEngine> engines) {
+		SudokuEngine engine = engines.get();
+		if (engine.getGeometry() != geometry)
+			throw new IllegalArgumentException("the engine solves " + engine.getGeometry()
+										+ " boards, not " + geometry);
+		this.engines = engines;
+		solver = engine;
+		solver.setSolverListener(solverListener);
+		SolverListener l = solverListener;
+		parallelCounter = new ParallelSolutionCounter(geometry, () -> {
+			SudokuEngine e = engines.get();
+			e.setSolverListener(l);
+			return e;
+		});
+	}
+	
+	/**
+	 * setSolverListener
+	 * turns on the solver stats of solve, isSolvable, isUnique and
+	 * uniqueSolutions. The listener gets the stats of every search,
+	 * including those of the threads counting in parallel, and the
+	 * SolveResult of a single threaded search carries them. A
+	 * SolverMetrics adds them up and shows them through JMX.
+	 * @param listener the listener, or null to stop recording
+	 */
+	public void setSolverListener(SolverListener listener) {
+		solverListener = listener;
+		setEngine(engines);
+	}
+	
+	/**
+	 * setPrecompute
+	 * if on, the givens are solved in the background as soon as a board
+	 * is set, with an engine of their own, so checkWrong, removeWrong and
+	 * the hints do not wait for a solve. Otherwise they are solved the
+	 * first time a solution is needed.
+	 * @param on true to solve in the background
+	 */
+	public void setPrecompute(boolean on) {
+		precompute = on;
+	}
+	
+	/**
+	 * solution
+	 * @return the cached solution of the givens, solving them if this is
+	 * the first time since they changed
+	 */
+	private Solution solution() {
+		return solution(null);
+	}
+	
+	/**
+	 * solution
+	 * like solution() but gives up when the budget runs out. A solve of
+	 * the givens that runs in the background is waited for a slice at a
+	 * time, so the budget is looked at in between.
+	 * @param budget the budget, or null for none
+	 * @return the cached solution of the givens, or null if the budget
+	 * ran out first
+	 */
+	private Solution solution(SolveBudget budget) {
+		if (givensSolution == null) {
+			Solution known = solveGivens(solver, initialBoard, budget);
+			if (known != null) givensSolution = CompletableFuture.completedFuture(known);
+			return known;
+		}
+		while (budget != null && !givensSolution.isDone()) {
+			if (budget.isOver()) return null;
+			try {
+				givensSolution.get(WAIT_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException | ExecutionException e) {
+				// isDone is asked again, join throws the failure
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}
+		return givensSolution.join();
+	}
+	
+	/**
+	 * solveGivens
+	 * @param engine the engine to solve with
+	 * @param givens the board row by row
+	 * @param budget the budget, or null for none
+	 * @return the first solution found and if it is the only one, or
+	 * null if the budget ran out first
+	 */
+	private static Solution solveGivens(SudokuEngine engine, byte[] givens, SolveBudget budget) {
+		int[] cells = new int[givens.length];
+		for (int i = 0; i < cells.length; i++) cells[i] = givens[i];
+		boolean loaded = engine.load(cells);
+		int n = loaded ? engine.countSolutions(2, budget) : 0;
+		if (loaded && n < 2 && engine.isExhausted())
+			return null;
+		return new Solution((n > 0) ? toBytes(engine.getSolution()) : null, n == 1);
+	}
+	
+	/**
+	 * setGivens
+	 * records the board that reset goes back to and the solution cache
+	 * is keyed on. The cached solution is only thrown away if the givens
+	 * are different.
+	 * @param cells the new givens row by row
+	 * @param known their solution if it is already known, otherwise null
+	 */
+	private void setGivens(byte[] cells, Solution known) {
+		if (known != null) {
+			givensSolution = CompletableFuture.completedFuture(known);
+		} else if (givensSolution == null || !Arrays.equals(initialBoard, cells)) {
+			if (precompute) {
+				SudokuEngine engine = engines.get();
+				byte[] givens = cells.clone();
+				givensSolution = CompletableFuture.supplyAsync(() -> solveGivens(engine, givens, null));
+			} else {
+				givensSolution = null;
+			}
+		}
+		System.arraycopy(cells, 0, initialBoard, 0, cells.length);
 	}
 	
 	/**
@@ -56,12 +389,14 @@ public class MySudokuModel implements SudokuModel {
 	 * in the sudoku
 	 */
 	public void setBoard(int row, int col, int val) {
+		if (val < 0 || val > rows)
+			throw new IllegalArgumentException("Value out of range: " + val);
 		if (isLegal(row, col, val)) {
-			int oldVal = sudoku[row][col];
-			sudoku[row][col] = val;
-			addHistory(new Move(row, col, val, oldVal));
+			int oldVal = sudoku[row*cols + col];
+			place(row*cols + col, val);
+			addHistory(packMove(row*cols + col, val, oldVal));
 			moveHistoryBound = moveHistoryIndex; // this means that a value was added by user
-			pcs.fireIndexedPropertyChange("setBoard", (row*9+col), oldVal, val);
+			pcs.fireIndexedPropertyChange("setBoard", (row*cols+col), oldVal, val);
 		} else {
 			throw new IllegalArgumentException("Not allowed to put duplicate"
 										+ "numbers in rows, columns or block");
@@ -71,29 +406,137 @@ public class MySudokuModel implements SudokuModel {
 	/**
 	 * setBoard
 	 * sets the sudoku from a string. If it is not a valid sudoku
-	 * it throws an IllegalArgumentException
+	 * it throws an IllegalArgumentException. The string is either 9
+	 * lines of 9 characters or one line of 81 (N lines of N characters
+	 * or one line of N*N on other sizes), see BoardFormat
 	 * @param input the string that are to be parsed to a sudoku
 	 * @throws IllegalArgumentException if the sudoku is not of
 	 * valid format
+	 * @throws IllegalBoardException if values are duplicated, the
+	 * sudoku is then left as it was
 	 */
 	public void setBoard(String input) {
-		int[][] oldsud = cpyArr(sudoku);
-		String[] parts = input.split("\n");
-		
-		for(int i = 0; i<rows; i++) {
-			for(int j = 0; j<cols; j++){
-				try {
-					int token = Integer.parseInt(parts[i].substring(j,j+1));
-					setBoard(i, j, token);
-				} catch (NumberFormatException e) {
-					setBoard(i, j, 0);
-				} catch (IndexOutOfBoundsException e) {
-					throw new IllegalArgumentException("Illegal format");
-				}
+		int[] cells = new int[rows*cols];
+		if (!BoardFormat.parse(input, rows, cells))
+			throw new IllegalArgumentException("Illegal format");
+		setBoard(cells);
+	}
+	
+	/**
+	 * setBoard
+	 * replaces the whole sudoku in one step. The board is checked in
+	 * one pass over the row, column and block masks and is only set
+	 * if no value is duplicated. The history is cleared and a single
+	 * setBoardStr propertychange is fired.
+	 * @param cells the board row by row, 81 values where 0 is empty
+	 * (N*N values between 0 and N on other sizes)
+	 * @throws IllegalArgumentException if there are not 81 values
+	 * between 0 and 9
+	 * @throws IllegalBoardException if values are duplicated, the
+	 * sudoku is then left as it was
+	 */
+	public void setBoard(int[] cells) {
+		loadBoard(cells, null);
+	}
+	
+	/**
+	 * loadBoard
+	 * the body of setBoard(int[])
+	 * @param known the solution of cells if it is already known, otherwise null
+	 */
+	private void loadBoard(int[] cells, Solution known) {
+		if (cells.length != rows*cols)
+			throw new IllegalArgumentException("Illegal format");
+		for (int val : cells) {
+			if (val < 0 || val > rows)
+				throw new IllegalArgumentException("Illegal format");
+		}
+		// every unit is checked in one pass over the unit table, the masks
+		// of the rows, columns and blocks come out of the same pass
+		int[] units = geometry.units;
+		int[] seen = new int[geometry.unitCount];
+		boolean[] conflict = new boolean[cells.length];
+		for (int u = 0; u < seen.length; u++) {
+			int dup = 0;
+			for (int k = u*rows, end = k + rows; k < end; k++) {
+				int bit = (1 << cells[units[k]]) & all;
+				dup |= seen[u] & bit;
+				seen[u] |= bit;
 			}
+			for (int k = u*rows, end = k + rows; dup != 0 && k < end; k++) {
+				int i = units[k];
+				if (((1 << cells[i]) & dup) != 0) conflict[i] = true;
+			}
+		}
+		int conflicts = 0;
+		int[] conflicting = new int[cells.length];
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] != 0 && (conflict[i] || !geometry.allows(cells, i, cells[i])))
+				conflicting[conflicts++] = i;
 		}
-		clearHistory(); // since i use setboard i need to clear the history
+		if (conflicts > 0)
+			throw new IllegalBoardException(Arrays.copyOf(conflicting, conflicts));
+		
+		byte[] oldsud = snapshot();
+		for (int i = 0; i < cells.length; i++) {
+			sudoku[i] = (byte) cells[i];
+		}
+		System.arraycopy(seen, 0, rowMask, 0, rows);
+		System.arraycopy(seen, rows, colMask, 0, cols);
+		System.arraycopy(seen, 2*rows, blockMask, 0, rows);
+		setGivens(sudoku, known);
+		clearHistory();
 		pcs.firePropertyChange("setBoardStr", oldsud, sudoku);
+		recycle(oldsud);
+	}
+	
+	/**
+	 * importPacked
+	 * sets the sudoku from the compact givens form of BoardCodec,
+	 * in the same way as setBoard(String)
+	 * @param data bytes written by exportPacked or BoardCodec.encodeGivens
+	 * @throws IllegalArgumentException if the data is too short or
+	 * the sudoku is not valid
+	 * @throws IllegalStateException if the board is not 9x9
+	 */
+	public void importPacked(byte[] data) {
+		checkStandard();
+		if (data.length < BoardCodec.MASK_BYTES || data.length < BoardCodec.givensLength(data, 0))
+			throw new IllegalArgumentException("Illegal format");
+		int[] cells = new int[rows*cols];
+		BoardCodec.decodeGivens(data, 0, cells);
+		setBoard(cells);
+	}
+	
+	/**
+	 * exportPacked
+	 * @return the sudoku in the compact givens form of BoardCodec,
+	 * 11 bytes plus half a byte per filled square
+	 * @throws IllegalStateException if the board is not 9x9
+	 */
+	public byte[] exportPacked() {
+		checkStandard();
+		byte[] buf = new byte[BoardCodec.MAX_GIVENS_BYTES];
+		int len = BoardCodec.encodeGivens(cells(), buf, 0);
+		return Arrays.copyOf(buf, len);
+	}
+	
+	/**
+	 * checkStandard
+	 * @throws IllegalStateException if the board is not 9x9, which
+	 * the packed forms of BoardCodec are made for
+	 */
+	private void checkStandard() {
+		if (geometry != SudokuGeometry.STANDARD)
+			throw new IllegalStateException("only 9x9 boards can be packed");
+	}
+	
+	/**
+	 * getGeometry
+	 * @return the size of the board
+	 */
+	public SudokuGeometry getGeometry() {
+		return geometry;
 	}
 	
 	/**
@@ -107,7 +550,7 @@ public class MySudokuModel implements SudokuModel {
 	 */
 	public int getBoard(int row, int col) {
 		int value = (row < 0 || row >= rows || col < 0 || col >= cols) ?
-													0 : sudoku[row][col];
+													0 : sudoku[row*cols + col];
 		return value;
 	}
 	
@@ -118,15 +561,9 @@ public class MySudokuModel implements SudokuModel {
 	 *  @return string with a sudokuboard
 	 */
 	public String getBoard() {
-		String s = "";
-		for(int[] row : sudoku) {
-			for (int col : row) {
-				s += col;
-			}
-			s += "\n";
-		}
-		return s;
-	
+		char[] s = new char[rows*(cols+1)];
+		BoardFormat.format(cells(), rows, s, 0);
+		return new String(s);
 	}
 	
 	
@@ -135,122 +572,101 @@ public class MySudokuModel implements SudokuModel {
 	 * determines if a value is a legal value to put in the
 	 * sudoku. A value is legal if it is 0, the same value
 	 * as before or there is no occurance of it in a row
-	 * column or block.
+	 * column or block. On variants it may not be in a group of
+	 * the square either, or make the sum of a cage unreachable.
 	 * @param row the row index of the value to be checked
 	 * @param col the column index of the value to be checked
 	 * @param val the integer value to be checked
 	 * @return boolean true if it is a legal option
 	 */
 	public boolean isLegal(int row, int col, int val) {
-		if (val == 0 || val == sudoku[row][col]) {
+		if (val == 0 || val == sudoku[row*cols + col]) {
 			return true;
 		} else {
-			int[] block = extractBlock(row, col);
-			if (!isInArray(block, val) && 
-				!isInArray(sudoku[row], val) && 
-				!isInArray(extractCol(col), val)) {
-				return true;
-			}
-			return false;
+			int used = rowMask[row] | colMask[col] | blockMask[blockIndex(row, col)];
+			return (used & (1 << val)) == 0 && (geometry.groupCount == 0
+						|| geometry.allows(cells(), row*cols + col, val));
 		}	
 	}
 	
 	/**
-	 * clear
-	 * clears the sudoku and the history and fires a propertychange
+	 * blockIndex
+	 * the index of the block a square belongs to, counted row by row
+	 * @param row the row index
+	 * @param col the column index
+	 * @return block index between 0 and 8 (N-1 on other sizes)
 	 */
-	public void clear() {
-		int[][] oldsud = new int[rows][cols];
-		counter = 0;
-		for (int i = 0; i < rows; i++) {
-			for (int j = 0; j < cols; j++) {
-				oldsud[i][j] = sudoku[i][j];
-				sudoku[i][j] = 0;
-			}
-		}
-		clearHistory();
-		pcs.firePropertyChange("clear", oldsud, sudoku);;
+	private int blockIndex(int row, int col) {
+		return blockOf[row*cols + col];
 	}
 	
 	/**
-	 * extractBlock
-	 * extracts a block from the sudoku and puts it in an array
-	 * if row or col is outside the sudoku boundaries it returns null
-	 * @param row the row index of the square contained by one block
-	 * @param col the column index of the square contained by one block
-	 * @return array with all the numbers contained by the block
+	 * place
+	 * puts a value in the sudoku and keeps the row, column and block
+	 * masks in sync with it. Does not check if the value is legal.
+	 * @param cell the index of the square, row*N + column
+	 * @param val the new value, 0 for an empty square
 	 */
-	private int[] extractBlock(int row, int col) {
-		if (row < 0 || row >= rows || col < 0 || col >= cols)
-			return null;
-		int blockY = row/3;
-		int blockX = col/3;
-		int[] tmp = new int[9];
-		for ( int i = 0 ; i < 3 ; i++ ) {
-			for ( int j=0; j <3; j++) {
-				tmp[i*3 + j] = sudoku[blockY*3 + i][blockX*3+j];
-			}
+	private void place(int cell, int val) {
+		int row = rowOf[cell], col = colOf[cell], block = blockOf[cell];
+		int clearOld = ~(1 << sudoku[cell]);
+		rowMask[row] &= clearOld;
+		colMask[col] &= clearOld;
+		blockMask[block] &= clearOld;
+		sudoku[cell] = (byte) val;
+		if (val != 0) {
+			rowMask[row] |= 1 << val;
+			colMask[col] |= 1 << val;
+			blockMask[block] |= 1 << val;
 		}
-		return tmp;
 	}
 	
 	/**
-	 * extractCol
-	 * extracts the entire column out of a sudoku and puts it in an array
-	 * if user tries to extract a column outside of the sudoku it returns
-	 * null instead
-	 * @param col the column to be extracted.
-	 * @return column as an array
+	 * rebuildMasks
+	 * recalculates the row, column and block masks from the sudoku,
+	 * used after the whole board has been replaced
 	 */
-	private int[] extractCol(int col) {
-		if (col < 0 || col >= cols) return null;
-		int[] tmp = new int[rows];		
-		for(int i = 0; i < 9; i++) {
-			tmp[i] = sudoku[i][col];
-		}
-		return tmp;
-	}
-	
-	/**
-	 * isInArray
-	 * checks if a value is in an array
-	 * @param b the array to be checked
-	 * @param a the value you want to look for
-	 * @return boolean true if the element is in the array
-	 */
-	private boolean isInArray(int[] b, int a) {	
-		for (int i = 0; i < b.length; i++ ) {
-			if(b[i] == a) return true;
+	private void rebuildMasks() {
+		Arrays.fill(rowMask, 0);
+		Arrays.fill(colMask, 0);
+		Arrays.fill(blockMask, 0);
+		for (int k = 0; k < rows*cols; k++) {
+			int val = sudoku[k];
+			if (val != 0) {
+				rowMask[rowOf[k]] |= 1 << val;
+				colMask[colOf[k]] |= 1 << val;
+				blockMask[blockOf[k]] |= 1 << val;
+			}
 		}
-		return false;		
 	}
 	
 	/**
-	 * sumEmptyArray
-	 * counts all the zeros in an array
-	 * @param a
-	 * @return counted value
+	 * clear
+	 * clears the sudoku and the history and fires a propertychange
 	 */
-	private int sumEmptyArray(int[] a) {
-		int counter = 0;
-		for (int e: a) {
-			if (e==0) counter++;
-		}
-		return counter;
+	public void clear() {
+		byte[] oldsud = snapshot();
+		counter = 0;
+		Arrays.fill(sudoku, (byte) 0);
+		rebuildMasks();
+		setGivens(sudoku, null);
+		clearHistory();
+		pcs.firePropertyChange("clear", oldsud, sudoku);
+		recycle(oldsud);
 	}
 	
 	/**
 	 * sumEmpty
-	 * sums the empy indexes in each row, column and block of the solution
+	 * sums the empty squares in the row, column and block of a square.
+	 * No value is repeated in a unit, so these are the values missing
+	 * from their masks.
 	 * @param row the row index
 	 * @param col the column index
 	 * @return sum of the amount of empty indexes
 	 */
 	private int sumEmpty(int row, int col) {
-		int sum = sumEmptyArray(sudoku[row]); 			// count the empty cells in the row
-		sum += sumEmptyArray(extractCol(col)); 			// count the empty cells in the column 
-		sum += sumEmptyArray(extractBlock(row, col)); 	// count the empty cell in the block
-		return sum;
+		return 3*rows - Integer.bitCount(rowMask[row]) - Integer.bitCount(colMask[col])
+						- Integer.bitCount(blockMask[blockIndex(row, col)]);
 	}
 	
 	/**
@@ -261,43 +677,155 @@ public class MySudokuModel implements SudokuModel {
 	 * @return boolean true if there is a solution
 	 */
 	public boolean solve() {
-		counter = 0;
-		if (solveHelper(1)) {
-			int[][] oldsud = cpyArr(sudoku);
-			sudoku = cpyArr(solvedSudoku);
-			pcs.firePropertyChange("setBoardStr", oldsud, sudoku);
-			return true;
+		return solve(null).getStatus() == SolveResult.Status.SOLVED;
+	}
+	
+	/**
+	 * solve
+	 * like solve() but the search stops when the budget runs out. The
+	 * cached solution of the givens is used if it is ready and agrees
+	 * with the board, otherwise the board is searched once. The cache is
+	 * never filled here, that is left to the background solve of
+	 * setPrecompute or to the first caller that needs the givens solved.
+	 * @param budget the budget, or null for none
+	 * @return SOLVED if the sudoku was set to a solution, otherwise
+	 * UNSOLVABLE or BUDGET_EXHAUSTED and the sudoku is not changed
+	 */
+	public SolveResult solve(SolveBudget budget) {
+		long t0 = System.nanoTime();
+		Solution known = readySolution();
+		SolveResult res;
+		if (known != null && known.cells != null && agrees(known.cells)) {
+			res = new SolveResult(SolveResult.Status.SOLVED, 1, toMatrix(known.cells), 0,
+									System.nanoTime() - t0);
 		} else {
-			return false;
+			res = search(1, budget);
+		}
+		if (res.getStatus() == SolveResult.Status.SOLVED) {
+			byte[] oldsud = snapshot();
+			int[][] solution = res.getSolution();
+			for (int i = 0; i < sudoku.length; i++) {
+				sudoku[i] = (byte) solution[rowOf[i]][colOf[i]];
+			}
+			rebuildMasks();
+			pcs.firePropertyChange("setBoardStr", oldsud, sudoku);
+			recycle(oldsud);
+		}
+		return res;
+	}
+	
+	/**
+	 * prepareSolution
+	 * makes sure the solution of the givens is cached, waiting for the
+	 * background solve or solving them. Meant for a background thread,
+	 * so removeWrong, checkWrong and hint do not wait afterwards.
+	 * @param budget the budget, or null for none
+	 * @return boolean false if the budget ran out first
+	 */
+	public boolean prepareSolution(SolveBudget budget) {
+		return solution(budget) != null;
+	}
+	
+	/**
+	 * hasSolution
+	 * @return boolean true if the solution of the givens is cached, so
+	 * removeWrong, checkWrong and hint return without solving
+	 */
+	public boolean hasSolution() {
+		return readySolution() != null;
+	}
+	
+	/**
+	 * adoptSolution
+	 * takes over the cached solution of a copy, if it was computed for
+	 * the same givens. Used with prepareSolution on a copy.
+	 * @param work a copy made with MySudokuModel(MySudokuModel)
+	 */
+	void adoptSolution(MySudokuModel work) {
+		if (work.readySolution() != null && Arrays.equals(initialBoard, work.initialBoard))
+			givensSolution = work.givensSolution;
+	}
+	
+	/**
+	 * readySolution
+	 * @return the cached solution of the givens if it is already
+	 * computed, otherwise null
+	 */
+	private Solution readySolution() {
+		return (givensSolution != null && givensSolution.isDone()) ? givensSolution.join() : null;
+	}
+	
+	/**
+	 * agrees
+	 * @param solution a solved board row by row
+	 * @return boolean true if every filled square has the value of the solution
+	 */
+	private boolean agrees(byte[] solution) {
+		for (int i = 0; i < sudoku.length; i++) {
+			if (sudoku[i] != 0 && sudoku[i] != solution[i]) return false;
 		}
+		return true;
 	}
 	
 	/**
 	 * solveHelper
-	 * uses backtracking to generate solutions. If there are more
-	 * than one solution it will find them as well and increase the
-	 * counter.
+	 * lets the engine search the current board. The number of
+	 * solutions found is put in the counter. When several solutions are
+	 * asked for and the board is mostly empty the counting is done in
+	 * parallel.
+	 * @param counterLimit the search stops when more than this many
+	 * solutions are found
 	 * @return boolean true if it manage to find a solution
 	 */
 	private boolean solveHelper(int counterLimit){
-		int[] index = this.findLowestSumIndex();
-		if ((index[0] == -1 || index[1] == -1)) {
-			counter++;
-			if (counter == 1) {
-				solvedSudoku = cpyArr(sudoku);
+		return search(counterLimit + 1, null).getSolutions() > 0;
+	}
+	
+	/**
+	 * search
+	 * the body of solveHelper. A search with a node limit always runs on
+	 * one thread, so the limit holds for the whole search.
+	 * @param limit the search stops when this many solutions are found
+	 * @param budget the budget, or null for none
+	 * @return the outcome, with the first solution found
+	 */
+	private SolveResult search(int limit, SolveBudget budget) {
+		long t0 = System.nanoTime();
+		int[][] solution = null;
+		boolean exhausted = false;
+		long nodes;
+		boolean parallel = (budget == null || budget.getMaxNodes() == Long.MAX_VALUE)
+							&& limit > 1 && 100*emptySquares() >= PARALLEL_EMPTY_PERCENT*rows*cols;
+		if (parallel) {
+			counter = parallelCounter.count(cells(), limit, budget);
+			exhausted = parallelCounter.isExhausted();
+			nodes = parallelCounter.getNodes();
+			if (counter > 0) {
+				solution = parallelCounter.getSolution();
 			}
-			
-		}
-		else {
-			for(int i=1; i<10;i++) {
-				if(isLegal(index[0], index[1], i) && (counter <= counterLimit)) {
-					this.sudoku[index[0]][index[1]] = i;
-					this.solveHelper(counterLimit);
-					this.sudoku[index[0]][index[1]] = 0;
-				}
+		} else {
+			counter = solver.load(cells()) ? solver.countSolutions(limit, budget) : 0;
+			exhausted = solver.isExhausted();
+			nodes = solver.getNodes();
+			if (counter > 0) {
+				solution = solver.getSolution();
 			}
 		}
-		return counter > 0;
+		SolveResult res = SolveResult.of(counter, exhausted, solution, nodes, System.nanoTime() - t0);
+		if (solver.getStats() != null && !parallel) res.setStats(new SolverStats(solver.getStats()));
+		return res;
+	}
+	
+	/**
+	 * emptySquares
+	 * @return the number of empty squares on the board
+	 */
+	private int emptySquares() {
+		int empty = rows*cols;
+		for (int mask : rowMask) {
+			empty -= Integer.bitCount(mask);
+		}
+		return empty;
 	}
 	
 	/**
@@ -307,10 +835,10 @@ public class MySudokuModel implements SudokuModel {
 	 * @return index an array with two elements: [row, column]
 	 */
 	private int[] findLowestSumIndex() {
-		int[] index = {-1,-1, 28}; 	//row, col
-		for (int i = 0; i<9; i++ ) {
-			for (int j = 0; j<9; j++) {
-				if (this.sudoku[i][j] == 0) {
+		int[] index = {-1,-1, 3*rows+1}; 	//row, col
+		for (int i = 0; i<rows; i++ ) {
+			for (int j = 0; j<cols; j++) {
+				if (this.sudoku[i*cols + j] == 0) {
 					int sum = sumEmpty(i,j);
 					if (sum<index[2]) {
 						index[2] = sum;
@@ -327,9 +855,9 @@ public class MySudokuModel implements SudokuModel {
 		int[] index = findLowestSumIndex();
 		List<int[]> indexes = new LinkedList<int[]>();
 		indexes.add(index);
-		for (int i = 0; i<9; i++ ) {
-			for (int j = 0; j<9; j++) {
-				if (this.sudoku[i][j] == 0) {
+		for (int i = 0; i<rows; i++ ) {
+			for (int j = 0; j<cols; j++) {
+				if (this.sudoku[i*cols + j] == 0) {
 					int sum = this.sumEmpty(i,j);
 					if (sum==index[2]) {
 						int[] a = {i, j, sum};
@@ -343,13 +871,13 @@ public class MySudokuModel implements SudokuModel {
 	
 	/**
 	 * isSolvable
-	 * copies the model and solves the copy
+	 * solves the current board with the engine without changing
+	 * the model itself
 	 * @return boolean true if there is a solutions to the current
 	 * state of the model
 	 */
 	public boolean isSolvable() {
-		MySudokuModel a = new MySudokuModel(this);
-		return a.solve();
+		return solver.load(cells()) && solver.countSolutions(1) > 0;
 	}
 
 	/**
@@ -358,9 +886,8 @@ public class MySudokuModel implements SudokuModel {
 	 * @return boolean true if it has a unique solution
 	 */
 	public boolean isUnique() {
-		counter = 0;
 		boolean unique = true;
-		if (solveHelper(2)) {
+		if (solveHelper(1)) {
 			unique = (counter > 1) ? false : true;
 		}
 		return unique;
@@ -373,11 +900,32 @@ public class MySudokuModel implements SudokuModel {
 	 * @return counter, an integer value of the number of solutions
 	 */
 	public int uniqueSolutions() {
-		counter = 0;
 		solveHelper(10);
 		return counter;
 	}
 	
+	/**
+	 * isUnique
+	 * like isUnique() but the search stops when the budget runs out
+	 * @param budget the budget, or null for none
+	 * @return SOLVED if there is exactly one solution, MULTIPLE,
+	 * UNSOLVABLE or BUDGET_EXHAUSTED
+	 */
+	public SolveResult isUnique(SolveBudget budget) {
+		return search(2, budget);
+	}
+	
+	/**
+	 * uniqueSolutions
+	 * like uniqueSolutions() but the search stops when the budget runs
+	 * out. The number of solutions found is in the result.
+	 * @param budget the budget, or null for none
+	 * @return the outcome, counting at most 11 solutions
+	 */
+	public SolveResult uniqueSolutions(SolveBudget budget) {
+		return search(11, budget);
+	}
+	
 	@Override
 	public String toString() {
 		return getBoard();
@@ -394,16 +942,27 @@ public class MySudokuModel implements SudokuModel {
 	}
 	
 	/**
-	 * class Move
-	 * related to the history queue
-	 * stores the previous value, the indexes and the new value of
-	 * an value in the sudoku puzzle.
+	 * packMove
+	 * packs a move of the history queue into one int
+	 * @param cell the index of the square, row*N + column
+	 * @param val the new value
+	 * @param oldVal the previous value
+	 * @return cell in the low 16 bits, val and oldVal in one byte each
 	 */
-	private class Move {
-		int row, col, val, oldVal;
-		public Move(int r, int c, int v, int oldV) {
-			row = r; col = c; val = v; oldVal = oldV;
-		}
+	private static int packMove(int cell, int val, int oldVal) {
+		return cell | val << 16 | oldVal << 24;
+	}
+	
+	private static int moveCell(int move) {
+		return move & 0xFFFF;
+	}
+	
+	private static int moveVal(int move) {
+		return (move >>> 16) & 0xFF;
+	}
+	
+	private static int moveOldVal(int move) {
+		return move >>> 24;
 	}
 	
 	/**
@@ -411,37 +970,234 @@ public class MySudokuModel implements SudokuModel {
 	 * clears the history queue and variables connected to it
 	 */
 	private void clearHistory() {
+		historyHead = 0;
 		moveHistoryIndex = 0;
 		moveHistoryBound = 0;
-		moveHistory = new LinkedList<Move>();
+		historyDropped = false;
+		System.arraycopy(sudoku, 0, historyBase, 0, sudoku.length);
 	}
 	
 	/**
-	 * 
-	 * @param m Move object that is to be put in the queue. If the
-	 * index is equal to the size, then you will add it to the list.
-	 * if it is not then it will write over whatever was in the list
-	 * at that index.
+	 * addHistory
+	 * puts a move at the current index of the history queue, writing
+	 * over the moves that could have been redone. If the history is
+	 * limited and full the oldest move is dropped.
+	 * @param move a move packed by packMove
 	 */
-	private void addHistory(Move m) {
-		if (moveHistoryIndex == moveHistory.size()) {
-			moveHistory.add(m);
+	private void addHistory(int move) {
+		if (historyLimit > 0 && moveHistoryIndex >= historyLimit) {
+			dropOldest(moveHistoryIndex - historyLimit + 1);
+		}
+		if (moveHistoryIndex == moveHistory.length) {
+			int[] bigger = new int[moveHistory.length*2];
+			for (int i = 0; i < moveHistoryIndex; i++) {
+				bigger[i] = moveHistory[(historyHead + i) & (moveHistory.length - 1)];
+			}
+			moveHistory = bigger;
+			historyHead = 0;
 		}
-		else 
-			moveHistory.set(moveHistoryIndex, m);
+		moveHistory[(historyHead + moveHistoryIndex) & (moveHistory.length - 1)] = move;
 		moveHistoryIndex++;
 	}
 	
+	/**
+	 * historyMove
+	 * @param i the index in the history queue, from the oldest kept move
+	 * @return the packed move
+	 */
+	private int historyMove(int i) {
+		return moveHistory[(historyHead + i) & (moveHistory.length - 1)];
+	}
+	
+	/**
+	 * setHistoryLimit
+	 * limits how many moves can be undone, so long sessions use a
+	 * bounded amount of memory. When the limit is reached the oldest
+	 * move is forgotten, reset still goes back to the initial board.
+	 * Lowering the limit below the kept moves first forgets the moves
+	 * that could be redone, then the oldest moves that could be undone.
+	 * @param limit the number of moves kept, 0 for no limit
+	 */
+	public void setHistoryLimit(int limit) {
+		if (limit < 0)
+			throw new IllegalArgumentException("negative history limit");
+		historyLimit = limit;
+		if (limit > 0 && moveHistoryBound > limit) {
+			int drop = Math.max(0, moveHistoryIndex - limit);
+			if (drop > 0) {
+				dropOldest(drop);
+				moveHistoryBound -= drop;
+			}
+			moveHistoryBound = Math.min(moveHistoryBound, limit); // forget redo moves
+		}
+	}
+	
+	/**
+	 * dropOldest
+	 * forgets the oldest moves of the history queue. They are played on
+	 * historyBase so the kept moves can still be replayed from it.
+	 * @param drop the number of moves, at most moveHistoryIndex
+	 */
+	private void dropOldest(int drop) {
+		for (int i = 0; i < drop; i++) {
+			int move = historyMove(i);
+			historyBase[moveCell(move)] = (byte) moveVal(move);
+		}
+		historyHead = (historyHead + drop) & (moveHistory.length - 1);
+		moveHistoryIndex -= drop;
+		historyDropped = true;
+	}
+	
 	/**
 	 * makeSolvable
 	 * removes all inputs made after and including the one that is not part
-	 * of at least one solution
+	 * of at least one solution. The board is put back in one step and a
+	 * single rollback propertychange is fired. The removed inputs can not
+	 * be redone.
 	 */
 	public void makeSolvable() {
-		moveHistoryBound--;
-		while(!isSolvable())
-			undo();
-			moveHistoryBound--;
+		makeSolvable(null);
+	}
+	
+	/**
+	 * makeSolvable
+	 * like makeSolvable() but stops when the budget runs out, and then
+	 * leaves the board as it was. Progress propertychanges are fired
+	 * while the moves are searched.
+	 * @param budget the budget, or null for none
+	 * @return boolean false if the budget ran out first
+	 */
+	public boolean makeSolvable(SolveBudget budget) {
+		int keep = solvableMoves(budget);
+		if (keep < 0) return false;
+		if (keep == moveHistoryIndex) return true;
+		byte[] oldsud = snapshot();
+		boardAfter(keep, sudoku);
+		rebuildMasks();
+		moveHistoryIndex = keep;
+		moveHistoryBound = keep;
+		pcs.firePropertyChange("rollback", oldsud, sudoku);
+		recycle(oldsud);
+		return true;
+	}
+	
+	/**
+	 * solvableMoves
+	 * finds how many of the done moves can be kept with the board still
+	 * solvable. If the board the history starts from has a unique solution
+	 * and no move changed its filled squares, it is solved once and the
+	 * moves are replayed against it, counting the squares that differ from
+	 * the solution. Otherwise the longest solvable run of moves is found by
+	 * binary search, one solve per step. That assumes a move never makes an
+	 * unsolvable board solvable, which only holds if every move fills an
+	 * empty square. If a move erased or overwrote a value the moves are
+	 * taken back one at a time from the last, with one solve each, which
+	 * is what undoing until the board is solvable would do.
+	 * @param budget the budget, or null for none
+	 * @return the number of moves to keep, from 0 to moveHistoryIndex,
+	 * or -1 if the budget ran out first
+	 */
+	private int solvableMoves(SolveBudget budget) {
+		int n = moveHistoryIndex;
+		boolean givensKept = true;
+		for (int i = 0; i < n && givensKept; i++) {
+			givensKept = historyBase[moveCell(historyMove(i))] == 0;
+		}
+		Solution known = null;
+		if (givensKept) {
+			known = historyDropped ? solveGivens(solver, historyBase, budget) : solution(budget);
+			if (known == null) return -1;
+		}
+		if (known != null && known.unique) {
+			byte[] solution = known.cells;
+			byte[] cells = historyBase;
+			int wrong = 0;
+			for (int i = 0; i < cells.length; i++) {
+				if (cells[i] != 0 && cells[i] != solution[i]) wrong++;
+			}
+			// only the last value played on a square counts, it is looked up in the history
+			int keep = 0;
+			for (int i = 0; i < n; i++) {
+				int move = historyMove(i);
+				int cell = moveCell(move);
+				int right = solution[cell];
+				if (moveOldVal(move) != 0 && moveOldVal(move) != right) wrong--;
+				if (moveVal(move) != 0 && moveVal(move) != right) wrong++;
+				if (wrong == 0) keep = i + 1;
+			}
+			return keep;
+		}
+		boolean fillsOnly = true;
+		for (int i = 0; i < n && fillsOnly; i++) {
+			int move = historyMove(i);
+			fillsOnly = moveVal(move) != 0 && moveOldVal(move) == 0;
+		}
+		byte[] after = spareBoard();
+		boardAfter(n, after);
+		int found = solvable(after, budget);
+		if (!fillsOnly) {
+			int keep = n;
+			while (found == 0 && keep > 0) {
+				fireProgress(100*(n - keep)/n);
+				int move = historyMove(--keep);
+				after[moveCell(move)] = (byte) moveOldVal(move);
+				found = solvable(after, budget);
+			}
+			recycle(after);
+			return (found < 0) ? -1 : keep;
+		}
+		int lo = 0, hi = n; // after lo moves the board is taken as solvable, after hi it is not
+		int steps = 33 - Integer.numberOfLeadingZeros(n), step = 0;
+		if (found > 0) lo = n;
+		while (found >= 0 && hi - lo > 1) {
+			fireProgress(100*++step/steps);
+			int mid = (lo + hi) >>> 1;
+			boardAfter(mid, after);
+			found = solvable(after, budget);
+			if (found > 0) {
+				lo = mid;
+			} else {
+				hi = mid;
+			}
+		}
+		recycle(after);
+		return (found < 0) ? -1 : lo;
+	}
+	
+	/**
+	 * solvable
+	 * @param board a board row by row
+	 * @param budget the budget, or null for none
+	 * @return 1 if the board has a solution, 0 if not, -1 if the budget
+	 * ran out first
+	 */
+	private int solvable(byte[] board, SolveBudget budget) {
+		if (!solver.load(cells(board))) return 0;
+		int n = solver.countSolutions(1, budget);
+		return (n == 0 && solver.isExhausted()) ? -1 : n;
+	}
+	
+	/**
+	 * fireProgress
+	 * fires a progress propertychange, how far a long running method has
+	 * come. Only generate and makeSolvable fire them.
+	 * @param percent from 0 to 100
+	 */
+	private void fireProgress(int percent) {
+		pcs.firePropertyChange("progress", null, Math.min(100, percent));
+	}
+	
+	/**
+	 * boardAfter
+	 * @param moves the number of moves played from the oldest kept one
+	 * @param board gets the board row by row after those moves
+	 */
+	private void boardAfter(int moves, byte[] board) {
+		System.arraycopy(historyBase, 0, board, 0, board.length);
+		for (int i = 0; i < moves; i++) {
+			int move = historyMove(i);
+			board[moveCell(move)] = (byte) moveVal(move);
+		}
 	}
 	
 	/**
@@ -451,11 +1207,11 @@ public class MySudokuModel implements SudokuModel {
 	 */
 	public void undo() {
 		if (moveHistoryIndex > 0) {
-		Move last = moveHistory.get(moveHistoryIndex-1);
-		sudoku[last.row][last.col] = last.oldVal; //no need to use setboard
+		int last = historyMove(moveHistoryIndex-1);
+		int cell = moveCell(last);
+		place(cell, moveOldVal(last));   //no need to use setboard
 		moveHistoryIndex--;						  //since all values are safe
-		pcs.fireIndexedPropertyChange("undo", (last.row*9+last.col),
-												last.val, last.oldVal);
+		pcs.fireIndexedPropertyChange("undo", cell, moveVal(last), moveOldVal(last));
 		}
 	}
 	
@@ -465,192 +1221,211 @@ public class MySudokuModel implements SudokuModel {
 	 */
 	public void redo() {
 		if (moveHistoryIndex < moveHistoryBound) {
-		Move last = moveHistory.get(moveHistoryIndex);
-		sudoku[last.row][last.col] = last.val;
+		int last = historyMove(moveHistoryIndex);
+		int cell = moveCell(last);
+		place(cell, moveVal(last));
 		moveHistoryIndex++;
-		pcs.fireIndexedPropertyChange("redo", (last.row*9+last.col), last.oldVal, last.val);
+		pcs.fireIndexedPropertyChange("redo", cell, moveOldVal(last), moveVal(last));
 		}
 	}
 	
 	/**
-	 * cpyArr is a method for copying an m by n matrix
-	 * @param m an m by n matrix
-	 * @return reference to the copied matrix
+	 * cells
+	 * @return the board row by row as ints, in a scratch array that is
+	 * written over by the next call. The engines copy what they load.
+	 */
+	private int[] cells() {
+		return cells(sudoku);
+	}
+	
+	/**
+	 * cells
+	 * @param board a board row by row
+	 * @return the board as ints in the scratch array, see cells()
 	 */
-	private int[][] cpyArr (int[][] m) {
-		int[][] res = new int[m.length][];
-		for (int i = 0; i<m.length; i++) {
-			res[i] = Arrays.copyOf(m[i], m[i].length);
+	private int[] cells(byte[] board) {
+		for (int i = 0; i < board.length; i++) {
+			scratch[i] = board[i];
+		}
+		return scratch;
+	}
+	
+	/**
+	 * spareBoard
+	 * @return a board from the pool, or a new one if the pool is empty.
+	 * Its squares are not cleared.
+	 */
+	private byte[] spareBoard() {
+		byte[] board = spareBoards.poll();
+		return (board != null) ? board : new byte[rows*cols];
+	}
+	
+	/**
+	 * snapshot
+	 * @return a copy of the board in a spare board, give it back with
+	 * recycle when it is no longer used
+	 */
+	private byte[] snapshot() {
+		byte[] copy = spareBoard();
+		System.arraycopy(sudoku, 0, copy, 0, sudoku.length);
+		return copy;
+	}
+	
+	/**
+	 * recycle
+	 * puts a board that is no longer used back in the pool
+	 * @param board a board of this size
+	 */
+	private void recycle(byte[] board) {
+		if (spareBoards.size() < MAX_SPARE_BOARDS)
+			spareBoards.push(board);
+	}
+	
+	/**
+	 * toBytes
+	 * @param m an N by N matrix
+	 * @return the matrix row by row in one array
+	 */
+	private static byte[] toBytes(int[][] m) {
+		int n = m.length;
+		byte[] res = new byte[n*n];
+		for (int i = 0; i < res.length; i++) {
+			res[i] = (byte) m[i/n][i%n];
+		}
+		return res;
+	}
+	
+	/**
+	 * toMatrix
+	 * @param board a board row by row
+	 * @return the board as an N by N matrix
+	 */
+	private int[][] toMatrix(byte[] board) {
+		int[][] res = new int[rows][cols];
+		for (int i = 0; i < board.length; i++) {
+			res[rowOf[i]][colOf[i]] = board[i];
 		}
 		return res;
 	}
 	
 	/**
 	 * removeWrong
-	 * removes all numbers not part of the solution
+	 * removes all numbers not part of the solution of the givens. Does
+	 * nothing if the givens have no solution.
 	 */
 	public void removeWrong() {
-		for (int i = 0; i < rows; i++){
-			for (int j = 0; j < cols; j++) {
-				if (sudoku[i][j] != solvedSudoku[i][j])
-					setBoard(i, j, 0);
-			}
+		byte[] solution = solution().cells;
+		if (solution == null) return;
+		for (int i = 0; i < sudoku.length; i++) {
+			if (sudoku[i] != 0 && sudoku[i] != solution[i])
+				setBoard(rowOf[i], colOf[i], 0);
 		}
 	}
 	
 	/**
 	 * generate
-	 * generates a random sudoku and sets the board to that sudoku.
-	 * The solution will be unique. If hard difficulty is chosen
-	 * it will generate a sudoku with at most 24 filled squares
-	 * If easy difficulty is chosen then it will generate a sudoku
-	 * with 33 squares filled.
+	 * generates a random sudoku with the SudokuGenerator and sets the
+	 * board to that sudoku. The solution will be unique. The puzzle is
+	 * graded by a DifficultyGrader once enough clues are removed: an easy
+	 * sudoku can be solved with singles and has 34 filled squares, never fewer,
+	 * a hard one needs at least naked pairs and has at most 25. Other
+	 * sizes than 9x9 only look at the clues, see Difficulty.clues.
 	 * @param a the difficulty to be used
 	 */
 	public void generate(Difficulty a) {
-		clear();
-		int counter = 0;
-		while(counter<9) {
-			try {
-			int row = (int) (Math.random()*9);
-			int col = (int) (Math.random()*9);
-			int value = (int) (Math.random()*9+1);
-			setBoard(row, col, value);
-			counter++;
-			} catch (Exception e) {}
-		}
-		solve();
-		// Generate a random permutation of a [0..81] array
-		int[] range = randperm(IntStream.iterate(0, n -> n + 1).
-											limit(81).toArray());
-		
-		for (int e : range) {
-			int tmp = sudoku[e/9][e%9];
-			sudoku[e/9][e%9] = 0;
-			if (!isUnique()){
-				sudoku[e/9][e%9] = tmp;
-			}
-			
-		}
-		isUnique(); // restore the solution
-		int filledSquares = 81;
-		for (int[] e : sudoku) {
-			filledSquares -= sumEmptyArray(e);
-		}
-		if ((a == Difficulty.HARD) && filledSquares > 25) {
-			generate(Difficulty.HARD);
-		}
-		else if (a==Difficulty.EASY) {
-			while (filledSquares <34) {
-				int row = (int) (Math.random()*9);
-				int col = (int) (Math.random()*9);
-				if (sudoku[row][col] == 0) {
-					sudoku[row][col] = solvedSudoku[row][col];
-					filledSquares++;
-				}
-			}
-			
-		}
-		setBoard(this.getBoard());
+		generate(a, null);
 	}
 	
 	/**
-	 * randperm
-	 * random permutation of an integer array using Fisher–Yates shuffle
-	 * @param a the array you want to permute
-	 * @return shuffled a
+	 * generate
+	 * like generate(Difficulty) but stops when the budget runs out, and
+	 * then leaves the board as it was. Progress propertychanges are fired
+	 * as clues are removed. Puzzles that miss the difficulty are thrown
+	 * away, see SudokuGenerator.generate(Difficulty, SolveBudget).
+	 * @param a the difficulty to be used
+	 * @param budget the budget, or null for none
+	 * @return boolean false if the budget ran out first
 	 */
-	private int[] randperm(int[] a) {
-		int index, temp;
-		Random random = new Random();
-	    for (int i = a.length - 1; i > 0; i--)
-	    {
-	        index = random.nextInt(i + 1);
-	        temp = a[index];
-	        a[index] = a[i];
-	        a[i] = temp;
-	    }
-	    return a;
+	public boolean generate(Difficulty a, SolveBudget budget) {
+		int[] puzzle = generator.generate(a, budget);
+		if (puzzle == null) return false;
+		int[] solution = generator.getSolution();
+		byte[] solved = new byte[solution.length];
+		for (int i = 0; i < solved.length; i++) {
+			solved[i] = (byte) solution[i];
+		}
+		loadBoard(puzzle, new Solution(solved, true));
+		return true;
 	}
 	
+	/**
+	 * reset
+	 * puts back the board that was set or generated, in one step, and
+	 * fires a single reset propertychange. The moves can be redone unless
+	 * some of them were dropped by the history limit.
+	 */
 	public void reset() {
-		while (moveHistoryIndex > 0) {
-			undo();
+		byte[] oldsud = snapshot();
+		System.arraycopy(initialBoard, 0, sudoku, 0, sudoku.length);
+		rebuildMasks();
+		if (historyDropped) {
+			clearHistory();
+		} else {
+			moveHistoryIndex = 0;
 		}
+		pcs.firePropertyChange("reset", oldsud, sudoku);
+		recycle(oldsud);
 	}
 	
+	/**
+	 * checkWrong
+	 * fires a checkWrong propertychange with the board and the solution
+	 * of the givens, both row by row. Nothing is fired if the givens have
+	 * no solution.
+	 */
 	public void checkWrong() {
-		pcs.firePropertyChange("checkWrong", sudoku, solvedSudoku);
+		byte[] solution = solution().cells;
+		if (solution != null)
+			pcs.firePropertyChange("checkWrong", sudoku, solution);
 	}
 	public void findLowestPossible() {
 		List<int[]> a = findAllLowestSumIndex();
 		pcs.firePropertyChange("findLowest", null, a);
 	}
 	
-	public void betterHintFunction() {
-		List<int[]> a = new LinkedList<int[]>();
-		int metric = 9;
-		//int metricRowCol = 18;
-		for (int i = 0; i <rows; i++) {
-			for (int j = 0; j<cols; j++) {
-				if (sudoku[i][j] == 0) {
-					int tmpBlock = tryInBlock(i, j, solvedSudoku[i][j]);
-					int tmpRow = tryInRow(i, j, solvedSudoku[i][j]);
-					int tmpCol = tryInCol(i, j, solvedSudoku[i][j]);
-					int tmp = Math.min(tmpCol, Math.min(tmpBlock, tmpRow));
-					
-					if (tmp < metric) {
-						metric = tmp;
-						int[] index = {i, j, tmp, metric};
-						a = new LinkedList<int[]>();
-						a.add(index);
-					} else if(metric == tmp) {
-						int[] index = {i, j, tmp, metric};
-						a.add(index);
-					}
-				}
-			}
-		}
-		pcs.firePropertyChange("betterHintFunction", null, a);
-	}
-		
-	private int tryInBlock(int row, int col, int value) {
-		int metric = 0;
-		for (int i = 0; i<3; i++) {
-			for (int j = 0; j < 3; j++) {
-				int x = (row/3)*3+i;
-				int y = (col/3)*3+j;
-				if (sudoku[x][y] == 0)
-					metric = (isLegal(x,y, value)) ? metric+1 : metric;
-			}
-		}
-		return metric;
-	}
-	private int tryInRow(int row, int col, int value) {
-		int metric = 0;
-		for (int i = 0; i<rows; i++) {
-			if(sudoku[row][i] == 0) {
-				metric = (isLegal(row, i, value)) ? metric+1:metric;
-			}
-		}
-		return metric;
-	}
-	private int tryInCol(int row, int col, int value) {
-		int metric = 0;
-		// ((3/3)*3+3+i)%9
-		for (int i = 0; i<cols; i++) {
-			if(sudoku[i][col] == 0) {
-				metric = (isLegal(i, col, value)) ? metric+1:metric;
-			}
+	/**
+	 * hint
+	 * finds the next square that can be filled by logic. The candidates
+	 * come straight from the row, column and block masks, which are kept
+	 * up to date by every move, and a DifficultyGrader takes it from there.
+	 * Like removeWrong and checkWrong it uses the cached solution of the
+	 * givens, and solves them first if needed.
+	 * @return the hint, or null if no square can be filled by logic, the
+	 * board already differs from the solution of the givens or the board
+	 * is not 9x9
+	 */
+	public Hint hint() {
+		if (geometry != SudokuGeometry.STANDARD)
+			return null;
+		Solution known = solution();
+		if (known.cells != null && !agrees(known.cells))
+			return null;
+		int[] board = cells();
+		int[] cand = new int[rows*cols];
+		for (int k = 0; k < cand.length; k++) {
+			if (board[k] == 0)
+				cand[k] = all & ~(rowMask[rowOf[k]] | colMask[colOf[k]] | blockMask[blockOf[k]]);
 		}
-		return metric; 
+		return grader.hint(board, cand);
 	}
-		/*
-		 * for each square in the sudoku == 0
-		 * take the value from the solution
-		 * check if it is possible to place.
-		 * take the best measurement and put
-		 * in list.
-		 */
+	
+	/**
+	 * betterHintFunction
+	 * fires a betterHintFunction propertychange with the Hint of the
+	 * board as new value, null if there is none
+	 */
+	public void betterHintFunction() {
+		pcs.firePropertyChange("betterHintFunction", null, hint());
 	}
+}
 
@@ -1,6 +1,5 @@
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
-import java.util.List;
 import java.beans.*;
 import java.awt.*;
 import javax.swing.*;
@@ -19,7 +18,8 @@ import java.awt.event.*;
 public class MySudokuView extends JPanel
 				implements PropertyChangeListener, KeyListener {
 	
-	Square[][] playField = new Square[9][9];
+	Square[][] playField;
+	int size;
 	SudokuModel model;
 	SudokuController controller;
 	boolean checkedFlag;
@@ -37,15 +37,18 @@ public class MySudokuView extends JPanel
 	    model.addPropertyChangeListener(this);
 		
 	    /*Initiates the playfield, wich basically is the view of the sudoku puzzle*/
-		setLayout(new GridLayout(3, 3));
-		for (int k = 0; k <9; k++) {
+		int box = model.getGeometry().box;
+		size = model.getGeometry().size;
+		playField = new Square[size][size];
+		setLayout(new GridLayout(box, box));
+		for (int k = 0; k <size; k++) {
 			JPanel block = new JPanel();
-			block.setLayout(new GridLayout(3,3));
+			block.setLayout(new GridLayout(box,box));
 			block.setBorder( new LineBorder(Color.BLACK));
-			for (int i = 0; i < 3; i++) {
-				for (int j = 0; j < 3; j++) {
-					int row = i+3*(k/3);
-					int col = j+3*(k%3);
+			for (int i = 0; i < box; i++) {
+				for (int j = 0; j < box; j++) {
+					int row = i+box*(k/box);
+					int col = j+box*(k%box);
 					Square s = new Square(row, col);
 					Action beep = s.getActionMap().get(DefaultEditorKit.deletePrevCharAction);
 					beep.setEnabled(false);
@@ -112,17 +115,19 @@ public class MySudokuView extends JPanel
 		
 		if ((evt instanceof IndexedPropertyChangeEvent)) {
 			int index = ((IndexedPropertyChangeEvent) evt).getIndex();
-			int col = index%9;
-			int row = index/9;
+			int col = index%size;
+			int row = index/size;
 			
 			
 			
 			if (checkedFlag) {
 				checkedFlag = false;
-				for (int i = 0; i<9; i++) {
-					for (int j = 0; j < 9; j++) {
-						if(playField[i][j].isEnabled())
+				for (int i = 0; i<size; i++) {
+					for (int j = 0; j < size; j++) {
+						if(playField[i][j].isEnabled()) {
 							playField[i][j].setBackground(Color.WHITE);
+							playField[i][j].setToolTipText(null);
+						}
 					}
 				}
 			}
@@ -132,19 +137,20 @@ public class MySudokuView extends JPanel
 			int value = model.getBoard(row,col);
 			/* if the value is greater than 0 it will set the Square to the value. Else
 			   it will set the Square to null. */
-			playField[row][col].setText( (value>0) ? Integer.toString(value) : null );
+			playField[row][col].setText(text(value));
 			playField[row][col].setBackground(Color.WHITE);
 			
 		}
 		
-		else if ((event == "clear") || (event == "setBoardStr")){
-			// what happends if it is of nonindexed type, ie. clear() and setBoard(String a)
-			for (int i = 0; i<9; i++) {
-				for (int j = 0; j < 9; j++) {
+		else if ((event == "clear") || (event == "setBoardStr") || (event == "reset")){
+			// what happends if it is of nonindexed type, ie. clear(), reset() and setBoard(String a)
+			for (int i = 0; i<size; i++) {
+				for (int j = 0; j < size; j++) {
 					int val = model.getBoard(i,j);
 					Square ref =playField[i][j];
+					ref.setToolTipText(null);
 					if (val != 0) {
-						ref.setText(Integer.toString(val));
+						ref.setText(text(val));
 						ref.setEnabled(false);
 						ref.setBackground(new Color(224, 224, 224));
 						ref.setBorder(BorderFactory.createRaisedBevelBorder());
@@ -157,30 +163,41 @@ public class MySudokuView extends JPanel
 					}
 				}
 			}
+		} else if (event == "rollback") {
+			// several user inputs were taken back, the given squares are unchanged
+			for (int i = 0; i<size; i++) {
+				for (int j = 0; j < size; j++) {
+					Square ref = playField[i][j];
+					if (ref.isEnabled()) {
+						int val = model.getBoard(i,j);
+						ref.setText(text(val));
+						ref.setBackground(Color.WHITE);
+						ref.setToolTipText(null);
+					}
+				}
+			}
 		} else if((event == "checkWrong")) {
 			checkedFlag = true;
-			int[][] sudoku = (int[][]) evt.getOldValue();
-			int[][] solution = (int[][]) evt.getNewValue();
-			for (int i = 0; i < sudoku.length ; i++) {
-				for (int j = 0; j < sudoku[i].length; j++) {
-					Square block = playField[i][j];
-					if(sudoku[i][j] != solution[i][j]) {
-						block.setBackground(new Color(255, 147, 147));
-						
-					} else if (block.isEnabled())
-						block.setBackground(new Color(147, 255, 147));	
-				}
+			byte[] sudoku = (byte[]) evt.getOldValue();
+			byte[] solution = (byte[]) evt.getNewValue();
+			int size = playField.length;
+			for (int k = 0; k < sudoku.length ; k++) {
+				Square block = playField[k/size][k%size];
+				if(sudoku[k] != solution[k]) {
+					block.setBackground(new Color(255, 147, 147));
+					
+				} else if (block.isEnabled())
+					block.setBackground(new Color(147, 255, 147));	
 			}
 		} else if (event == "betterHintFunction") {
-			checkedFlag = true;
-			List<int[]> a = (List<int[]>) evt.getNewValue();
-			int i = 0;
-			while(i<a.size()) {
-				int[] index = a.get(i);
-				playField[index[0]][index[1]].setBackground(Color.BLUE);
-				System.out.println(index[3]);
-				i++;
-		}}
+			Hint hint = (Hint) evt.getNewValue();
+			if (hint != null) {
+				checkedFlag = true;
+				Square ref = playField[hint.getRow()][hint.getCol()];
+				ref.setBackground(Color.BLUE);
+				ref.setToolTipText(hint.getReason());
+			}
+		}
 		
 	}
 
@@ -196,11 +213,21 @@ public class MySudokuView extends JPanel
 		}
 		else if (e.getKeyCode() == KeyEvent.VK_BACK_SPACE) {
 			Square a = (Square) e.getSource();
-			controller.input(a.getRow(), a.getCol(), '0');
-			a.setText("");
+			if (controller.input(a.getRow(), a.getCol(), '0'))
+				a.setText("");
 		}
 	}
 	
+	/**
+	 * text
+	 * @param value a value of the model
+	 * @return the text of a Square with that value, 1-9 and then A, B, ...
+	 * on boards larger than 9x9, or null for an empty square
+	 */
+	private static String text(int value) {
+		return (value > 0) ? String.valueOf(BoardFormat.symbol(value)) : null;
+	}
+	
 	/**
 	 * moveFromTo 
 	 * @param e the KeyEvent, takes care of UP, DOWN, LEFT, RIGHT
@@ -223,9 +250,9 @@ public class MySudokuView extends JPanel
 			default: break;
 			}
 		} while(row >= 0 && col >= 0 &&
-				  row < 9 && col < 9 &&
+				  row < size && col < size &&
 				  !playField[row][col].isEnabled());
-		if(row >= 9 || row < 0 || col >= 9 || col < 0)
+		if(row >= size || row < 0 || col >= size || col < 0)
 			return s; /* was not able to find any possible Square in that 
 						direction to move to */
 		else
@@ -238,11 +265,10 @@ public class MySudokuView extends JPanel
 		int row = a.getRow(); int col = a.getCol();
 		if (controller.input(row, col, e.getKeyChar())) {
 			int value = model.getBoard(row,col);
-			a.setText( (value>0) ? Integer.toString(value) : null );
+			a.setText(text(value));
 		} else if (!e.isActionKey() && !(e.getKeyCode() == KeyEvent.VK_BACK_SPACE)){ // actionKeys does not count as input
 			int value = model.getBoard(row,col);
-			String settext = (value>0) ? Integer.toString(value) : "";
-			a.setText(settext);
+			a.setText(text(value));
 			Toolkit.getDefaultToolkit().beep();
 		}
 	}
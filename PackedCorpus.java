@@ -0,0 +1,224 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Class PackedCorpus
+ * a file holding many puzzles in the givens form of BoardCodec, with an
+ * index of record offsets at the end so any puzzle can be read directly.
+ *
+ * Layout, big endian:
+ *   header   int magic "SUDC", int version, long count, long index offset
+ *   records  count boards encoded with BoardCodec.encodeGivens
+ *   index    count longs, the file offset of every record
+ *
+ * usage: java PackedCorpus pack (directory|textfile) corpusfile
+ *        java PackedCorpus unpack corpusfile
+ * A directory is packed from its .sud files, a text file from its
+ * lines of 81 characters.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public final class PackedCorpus {
+
+	public static final int MAGIC = 0x53554443; // "SUDC"
+	public static final int VERSION = 1;
+	public static final int HEADER_BYTES = 24;
+
+	private PackedCorpus() {}
+
+	/**
+	 * class Writer
+	 * appends puzzles to a new corpus file. The index and the header
+	 * are written when the writer is closed.
+	 */
+	public static class Writer implements Closeable {
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+		private final byte[] record = new byte[BoardCodec.MAX_GIVENS_BYTES];
+		private long[] offsets = new long[1024];
+		private long count;
+		private long position = HEADER_BYTES;
+
+		public Writer(Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+			channel.position(HEADER_BYTES);
+		}
+
+		/**
+		 * add
+		 * @param cells the board row by row, 0 for empty
+		 */
+		public void add(int[] cells) throws IOException {
+			int len = BoardCodec.encodeGivens(cells, record, 0);
+			if (buffer.remaining() < len) flush();
+			buffer.put(record, 0, len);
+			if (count == offsets.length)
+				offsets = Arrays.copyOf(offsets, offsets.length*2);
+			offsets[(int) count++] = position;
+			position += len;
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) channel.write(buffer);
+			buffer.clear();
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				long indexOffset = position;
+				for (int i = 0; i < count; i++) {
+					if (buffer.remaining() < 8) flush();
+					buffer.putLong(offsets[i]);
+				}
+				flush();
+				buffer.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(indexOffset);
+				buffer.flip();
+				for (long pos = 0; buffer.hasRemaining(); ) {
+					pos += channel.write(buffer, pos);
+				}
+				buffer.clear();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * class Reader
+	 * reads puzzles from a corpus file by index. The index is kept in
+	 * memory and each get is one positional read. A Reader is not meant
+	 * to be used by several threads at once.
+	 */
+	public static class Reader implements Closeable {
+		private final FileChannel channel;
+		private final long[] offsets;
+		private final long indexOffset;
+		private final byte[] record = new byte[BoardCodec.MAX_GIVENS_BYTES];
+		private final ByteBuffer recordBuffer = ByteBuffer.wrap(record);
+
+		public Reader(Path file) throws IOException {
+			channel = FileChannel.open(file, StandardOpenOption.READ);
+			try {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+				readFully(header, 0);
+				header.flip();
+				if (header.getInt() != MAGIC || header.getInt() != VERSION)
+					throw new IOException("not a packed corpus: " + file);
+				long count = header.getLong();
+				indexOffset = header.getLong();
+				if (count > (Integer.MAX_VALUE - 8)/8)
+					throw new IOException("too many puzzles: " + count);
+				ByteBuffer index = ByteBuffer.allocate((int) count*8).order(ByteOrder.BIG_ENDIAN);
+				readFully(index, indexOffset);
+				index.flip();
+				offsets = new long[(int) count];
+				index.asLongBuffer().get(offsets);
+			} catch (IOException e) {
+				channel.close();
+				throw e;
+			}
+		}
+
+		/**
+		 * size
+		 * @return the number of puzzles in the corpus
+		 */
+		public int size() {
+			return offsets.length;
+		}
+
+		/**
+		 * get
+		 * @param i the index of the puzzle
+		 * @param cells where the 81 values are written
+		 */
+		public void get(int i, int[] cells) throws IOException {
+			long end = (i + 1 < offsets.length) ? offsets[i + 1] : indexOffset;
+			recordBuffer.clear().limit((int) (end - offsets[i]));
+			readFully(recordBuffer, offsets[i]);
+			BoardCodec.decodeGivens(record, 0, cells);
+		}
+
+		private void readFully(ByteBuffer buf, long pos) throws IOException {
+			while (buf.hasRemaining()) {
+				int n = channel.read(buf, pos);
+				if (n < 0) throw new EOFException();
+				pos += n;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 3 && args[0].equals("pack")) {
+			pack(Paths.get(args[1]), Paths.get(args[2]));
+		} else if (args.length == 2 && args[0].equals("unpack")) {
+			unpack(Paths.get(args[1]));
+		} else {
+			System.err.println("usage: java PackedCorpus pack (directory|textfile) corpusfile");
+			System.err.println("       java PackedCorpus unpack corpusfile");
+			System.exit(2);
+		}
+	}
+
+	private static void pack(Path src, Path dst) throws IOException {
+		int n = 0;
+		try (Writer w = new Writer(dst)) {
+			if (Files.isDirectory(src)) {
+				List<Path> files;
+				try (Stream<Path> s = Files.list(src)) {
+					files = s.filter(p -> p.toString().endsWith(".sud")).sorted()
+								.collect(Collectors.toList());
+				}
+				for (Path p : files) {
+					int[] cells = SudokuBatch.parse(Files.readAllBytes(p));
+					if (cells == null) {
+						System.err.println("skipping " + p);
+						continue;
+					}
+					w.add(cells);
+					n++;
+				}
+			} else {
+				int[] cells = new int[81];
+				try (BufferedReader br = Files.newBufferedReader(src, StandardCharsets.US_ASCII)) {
+					for (String line = br.readLine(); line != null; line = br.readLine()) {
+						if (line.length() < 81 || !BoardFormat.parse(line, cells)) continue;
+						w.add(cells);
+						n++;
+					}
+				}
+			}
+		}
+		System.err.println(n + " puzzles packed, " + Files.size(dst) + " bytes");
+	}
+
+	private static void unpack(Path src) throws IOException {
+		int[] cells = new int[81];
+		char[] line = new char[81];
+		try (Reader r = new Reader(src);
+			PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)))) {
+			for (int i = 0; i < r.size(); i++) {
+				r.get(i, cells);
+				for (int k = 0; k < 81; k++) line[k] = (char) ('0' + cells[k]);
+				out.println(line);
+			}
+		}
+	}
+}
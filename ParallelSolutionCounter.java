@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Class ParallelSolutionCounter
+ * counts the solutions of a sudoku on several cores. The first few
+ * branch points of the search are split into independent fork/join tasks,
+ * each working on its own copy of the board, and the remaining subtrees
+ * are searched by SudokuEngines taken from a pool of idle engines that
+ * belongs to the counter. An engine is made only when all others are in
+ * use, so there are never more than the tasks running at once, and they
+ * go away with the counter instead of staying with the worker threads.
+ * The tasks share one atomic solution count and one SolveBudget, which
+ * is cancelled as soon as the limit is reached, so the engines still
+ * searching stop too.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class ParallelSolutionCounter {
+
+	private final SudokuGeometry geometry;
+	private final int size;
+	private final int cellCount;
+	private final int[] peers;
+	private final int[] peerStart;
+	private final Supplier<SudokuEngine> engines;
+	private final ConcurrentLinkedQueue<SudokuEngine> idle = new ConcurrentLinkedQueue<>();
+	private final ForkJoinPool pool;
+	private final int splitDepth;
+
+	private AtomicInteger found;
+	private final AtomicLong nodes = new AtomicLong();
+	private AtomicReference<int[][]> solution;
+	private SolveBudget stop;	// cancelled when the limit is reached
+	private boolean exhausted;
+	private int limit;
+
+	/**
+	 * constructor for a ParallelSolutionCounter of 9x9 sudokus using the
+	 * common pool and splitting the first two branch points
+	 * @param engines creates the engines the tasks search with
+	 */
+	public ParallelSolutionCounter(Supplier<SudokuEngine> engines) {
+		this(SudokuGeometry.STANDARD, engines);
+	}
+
+	/**
+	 * constructor for a ParallelSolutionCounter using the common pool
+	 * and splitting the first two branch points
+	 * @param geometry the size of the boards, which may be a variant
+	 * @param engines creates the engines the tasks search with, for
+	 * boards of that geometry
+	 */
+	public ParallelSolutionCounter(SudokuGeometry geometry, Supplier<SudokuEngine> engines) {
+		this(geometry, engines, ForkJoinPool.commonPool(), 2);
+	}
+
+	/**
+	 * constructor for a ParallelSolutionCounter
+	 * @param geometry the size of the boards, which may be a variant
+	 * @param engines creates the engines the tasks search with
+	 * @param pool the pool the tasks run in
+	 * @param splitDepth how many branch points are split into tasks
+	 */
+	public ParallelSolutionCounter(SudokuGeometry geometry, Supplier<SudokuEngine> engines,
+								ForkJoinPool pool, int splitDepth) {
+		this.geometry = geometry;
+		size = geometry.size;
+		cellCount = geometry.cells;
+		peers = geometry.peers;
+		peerStart = geometry.peerStart;
+		this.engines = engines;
+		this.pool = pool;
+		this.splitDepth = splitDepth;
+	}
+
+	/**
+	 * count
+	 * counts the solutions of a board, stopping at the limit. The board
+	 * is not changed. Not meant to be called by several threads at once.
+	 * @param cells the board row by row, N*N values where 0 is empty
+	 * @param limit the counting stops when this many solutions are found
+	 * @return the number of solutions, at most limit. 0 if the board
+	 * breaks the sudoku rules
+	 */
+	public int count(int[] cells, int limit) {
+		return count(cells, limit, null);
+	}
+
+	/**
+	 * count
+	 * like count(int[], int) but every engine also stops when the
+	 * deadline of the budget passes or it is cancelled, see isExhausted.
+	 * The node limit of the budget is not used, as it would only hold
+	 * for each subtree.
+	 * @param cells the board row by row, N*N values where 0 is empty
+	 * @param limit the counting stops when this many solutions are found
+	 * @param budget the budget, or null for none
+	 * @return the number of solutions found before the counting stopped
+	 */
+	public int count(int[] cells, int limit, SolveBudget budget) {
+		if (cells.length != cellCount)
+			throw new IllegalArgumentException("need " + cellCount + " values, not " + cells.length);
+		this.limit = limit;
+		found = new AtomicInteger();
+		nodes.set(0);
+		solution = new AtomicReference<int[][]>();
+		stop = new SolveBudget(budget);
+		exhausted = false;
+		int[] board = cells.clone();
+		if (limit > 0 && isLegal(board))
+			pool.invoke(new CountTask(board, 0));
+		exhausted = found.get() < limit && budget != null && budget.isOver();
+		return Math.min(found.get(), limit);
+	}
+
+	/**
+	 * isExhausted
+	 * @return boolean true if the last count stopped because its budget
+	 * ran out, its count may then be too low
+	 */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
+	/**
+	 * getGeometry
+	 * @return the size of the boards the counter counts
+	 */
+	public SudokuGeometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * getSolution
+	 * @return one of the solutions found by the last count, or null
+	 * if there were none
+	 */
+	public int[][] getSolution() {
+		return solution.get();
+	}
+
+	/**
+	 * getNodes
+	 * @return the search nodes visited by the engines in the last count
+	 */
+	public long getNodes() {
+		return nodes.get();
+	}
+
+	/**
+	 * isLegal
+	 * @param board a board row by row
+	 * @return boolean false if a value is out of range or repeated by a
+	 * peer. Sums are left to the engines.
+	 */
+	private boolean isLegal(int[] board) {
+		for (int i = 0; i < cellCount; i++) {
+			if (board[i] < 0 || board[i] > size)
+				return false;
+			if (board[i] != 0 && (used(board, i) & (1 << board[i])) != 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * used
+	 * @param board a board row by row
+	 * @param cell the square index
+	 * @return the values of the peers of the square as a mask
+	 */
+	private int used(int[] board, int cell) {
+		int mask = 0;
+		for (int k = peerStart[cell]; k < peerStart[cell + 1]; k++) {
+			mask |= 1 << board[peers[k]];
+		}
+		return mask;
+	}
+
+	/**
+	 * class CountTask
+	 * branches on the most constrained square of its board until the
+	 * split depth is reached, then hands the board to the engine of
+	 * the worker thread.
+	 */
+	private class CountTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int[] board;
+		private final int depth;
+
+		CountTask(int[] board, int depth) {
+			this.board = board;
+			this.depth = depth;
+		}
+
+		@Override
+		protected void compute() {
+			if (stop.isOver()) return;
+			if (depth < splitDepth) {
+				split();
+			} else {
+				searchLeaf();
+			}
+		}
+
+		private void split() {
+			int cell = -1, cands = 0, best = size + 1;
+			for (int i = 0; i < cellCount && best > 1; i++) {
+				if (board[i] != 0) continue;
+				int c = geometry.all & ~used(board, i);
+				if (Integer.bitCount(c) < best) {
+					best = Integer.bitCount(c);
+					cell = i;
+					cands = c;
+				}
+			}
+			if (cell == -1 || best <= 1) { // full board or nothing to split
+				searchLeaf();
+				return;
+			}
+			List<CountTask> tasks = new ArrayList<CountTask>();
+			while (cands != 0) {
+				int bit = cands & -cands;
+				cands ^= bit;
+				int[] copy = board.clone();
+				copy[cell] = Integer.numberOfTrailingZeros(bit);
+				tasks.add(new CountTask(copy, depth + 1));
+			}
+			invokeAll(tasks);
+		}
+
+		private void searchLeaf() {
+			int remaining = limit - found.get();
+			if (remaining <= 0) return;
+			SudokuEngine engine = idle.poll();
+			if (engine == null) engine = engines.get();
+			try {
+				if (!engine.load(board)) return;
+				int n = engine.countSolutions(remaining, stop);
+				nodes.addAndGet(engine.getNodes());
+				if (n > 0) {
+					solution.compareAndSet(null, engine.getSolution());
+					if (found.addAndGet(n) >= limit) stop.cancel();
+				}
+			} finally {
+				idle.offer(engine);
+			}
+		}
+	}
+}
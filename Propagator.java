@@ -0,0 +1,287 @@
+import java.util.Arrays;
+
+/**
+ * Class Propagator
+ * fills in the squares of a sudoku, 9x9 or any other SudokuGeometry,
+ * that can be deduced without guessing. Naked singles (a square with one candidate left) and hidden
+ * singles (a value with one place left in a row, column or block) are
+ * applied over and over until nothing changes. Locked candidates can
+ * optionally be used to remove candidates when the singles run out.
+ *
+ * Every filled square is logged in order together with the rule that
+ * filled it, so the same pass can be used both before a search and
+ * for giving hints.
+ *
+ * On variants the extra units get hidden singles too and the groups
+ * are part of the peers. The sums of cages are left to the solver, so
+ * a board that breaks a sum is not always found out here.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class Propagator {
+
+	public enum Rule {NAKED_SINGLE, HIDDEN_SINGLE, LOCKED_CANDIDATES};
+
+	private final int size;
+	private final int cellCount;
+	private final int all;
+	private final int unitCount;
+	private final int[] rowOf;
+	private final int[] colOf;
+	private final int[] blockOf;
+	private final int[] peers;
+	private final int[] peerStart;
+	// the units, rows first then columns then blocks and the extra
+	// units, size squares each
+	private final int[] units;
+
+	private final boolean lockedCandidates;
+	private int[] grid;
+	private final int[] cand;
+	private final int[] fired = new int[Rule.values().length];
+	private final int[] stepCell;
+	private final int[] stepValue;
+	private final Rule[] stepRule;
+	private int filled;
+
+	/**
+	 * constructor for a Propagator of 9x9 boards
+	 * @param lockedCandidates true if locked candidates (pointing and
+	 * claiming) should be used when the singles run out
+	 */
+	public Propagator(boolean lockedCandidates) {
+		this(lockedCandidates, SudokuGeometry.STANDARD);
+	}
+
+	/**
+	 * constructor for a Propagator
+	 * @param lockedCandidates true if locked candidates (pointing and
+	 * claiming) should be used when the singles run out
+	 * @param geometry the size of the boards
+	 */
+	public Propagator(boolean lockedCandidates, SudokuGeometry geometry) {
+		this.lockedCandidates = lockedCandidates;
+		size = geometry.size;
+		cellCount = geometry.cells;
+		all = geometry.all;
+		unitCount = geometry.unitCount;
+		rowOf = geometry.row;
+		colOf = geometry.col;
+		blockOf = geometry.block;
+		peers = geometry.peers;
+		peerStart = geometry.peerStart;
+		units = geometry.units;
+		cand = new int[cellCount];
+		stepCell = new int[cellCount];
+		stepValue = new int[cellCount];
+		stepRule = new Rule[cellCount];
+	}
+
+	/**
+	 * propagate
+	 * fills the squares of the board that follow from the rules until
+	 * a fixpoint is reached. The board is changed in place.
+	 * @param board the board row by row, N*N values where 0 is empty.
+	 * It must not break the sudoku rules.
+	 * @return boolean false if a contradiction was found, meaning that
+	 * the board has no solution
+	 */
+	public boolean propagate(int[] board) {
+		grid = board;
+		filled = 0;
+		Arrays.fill(fired, 0);
+		for (int i = 0; i < cellCount; i++) {
+			cand[i] = (grid[i] == 0) ? all : 0;
+		}
+		for (int i = 0; i < cellCount; i++) {
+			if (grid[i] != 0) removeFromPeers(i, 1 << grid[i]);
+		}
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int i = 0; i < cellCount; i++) {
+				if (grid[i] != 0) continue;
+				int c = cand[i];
+				if (c == 0) return false;
+				if ((c & (c - 1)) == 0) {
+					place(i, c, Rule.NAKED_SINGLE);
+					changed = true;
+				}
+			}
+			for (int u = 0; u < unitCount; u++) {
+				int res = hiddenSingles(u);
+				if (res < 0) return false;
+				if (res > 0) changed = true;
+			}
+			if (!changed && lockedCandidates) {
+				changed = lockedCandidates();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * getFilled
+	 * @return the number of squares filled by the last propagate
+	 */
+	public int getFilled() {
+		return filled;
+	}
+
+	/**
+	 * getFired
+	 * @param r the rule
+	 * @return how many times the rule was used in the last propagate.
+	 * For the singles it is the number of squares filled, for locked
+	 * candidates the number of times candidates were removed.
+	 */
+	public int getFired(Rule r) {
+		return fired[r.ordinal()];
+	}
+
+	/**
+	 * getStepCell
+	 * @param step index between 0 and getFilled()-1
+	 * @return index of the square filled in that step, row*N+col
+	 */
+	public int getStepCell(int step) {
+		return stepCell[step];
+	}
+
+	/**
+	 * getStepValue
+	 * @param step index between 0 and getFilled()-1
+	 * @return the value filled in that step
+	 */
+	public int getStepValue(int step) {
+		return stepValue[step];
+	}
+
+	/**
+	 * getStepRule
+	 * @param step index between 0 and getFilled()-1
+	 * @return the rule that filled the square in that step
+	 */
+	public Rule getStepRule(int step) {
+		return stepRule[step];
+	}
+
+	/**
+	 * hiddenSingles
+	 * fills every value that has only one place left in a unit
+	 * @param u the unit index
+	 * @return number of squares filled, or -1 if a value has no place left
+	 */
+	private int hiddenSingles(int u) {
+		int once = 0, twice = 0, placed = 0;
+		for (int k = u*size; k < (u+1)*size; k++) {
+			int i = units[k];
+			if (grid[i] != 0) {
+				placed |= 1 << grid[i];
+			} else {
+				twice |= once & cand[i];
+				once |= cand[i];
+			}
+		}
+		if ((once | placed) != all) return -1;
+		int singles = once & ~twice & ~placed;
+		int n = 0;
+		while (singles != 0) {
+			int bit = singles & -singles;
+			singles ^= bit;
+			int k = u*size;
+			while (k < (u+1)*size && (cand[units[k]] & bit) == 0) k++;
+			if (k == (u+1)*size) return -1; // the square took another single
+			place(units[k], bit, Rule.HIDDEN_SINGLE);
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * lockedCandidates
+	 * if the candidates of a value in a block all lie in one row or column
+	 * they are removed from the rest of that row or column (pointing), and
+	 * if they lie in one block for a row or column they are removed from
+	 * the rest of the block (claiming). The extra units of a variant
+	 * are not looked at.
+	 * @return boolean true if any candidate was removed
+	 */
+	private boolean lockedCandidates() {
+		boolean changed = false;
+		for (int u = 0; u < 3*size; u++) {
+			for (int v = 1; v <= size; v++) {
+				int bit = 1 << v;
+				int rows = 0, cols = 0, blocks = 0;
+				for (int k = u*size; k < (u+1)*size; k++) {
+					int i = units[k];
+					if ((cand[i] & bit) != 0) {
+						rows |= 1 << rowOf[i];
+						cols |= 1 << colOf[i];
+						blocks |= 1 << blockOf[i];
+					}
+				}
+				if (rows == 0) continue;
+				int removed = 0;
+				if (u >= 2*size) { // block, pointing
+					if (Integer.bitCount(rows) == 1)
+						removed += eliminate(Integer.numberOfTrailingZeros(rows), u, bit);
+					if (Integer.bitCount(cols) == 1)
+						removed += eliminate(size + Integer.numberOfTrailingZeros(cols), u, bit);
+				} else if (Integer.bitCount(blocks) == 1) { // row or column, claiming
+					removed += eliminate(2*size + Integer.numberOfTrailingZeros(blocks), u, bit);
+				}
+				if (removed > 0) {
+					fired[Rule.LOCKED_CANDIDATES.ordinal()]++;
+					changed = true;
+				}
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * eliminate
+	 * removes a candidate from the squares of one unit that are not
+	 * also in another unit
+	 * @param target the unit to remove from
+	 * @param keep the unit whose squares are left alone
+	 * @param bit the value as a mask bit
+	 * @return number of candidates removed
+	 */
+	private int eliminate(int target, int keep, int bit) {
+		int removed = 0;
+		for (int k = target*size; k < (target+1)*size; k++) {
+			int i = units[k];
+			if ((cand[i] & bit) != 0 && !inUnit(i, keep)) {
+				cand[i] &= ~bit;
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	private boolean inUnit(int cell, int u) {
+		return u < size ? rowOf[cell] == u
+				: u < 2*size ? colOf[cell] == u - size : blockOf[cell] == u - 2*size;
+	}
+
+	private void place(int cell, int bit, Rule r) {
+		int v = Integer.numberOfTrailingZeros(bit);
+		grid[cell] = v;
+		cand[cell] = 0;
+		removeFromPeers(cell, bit);
+		stepCell[filled] = cell;
+		stepValue[filled] = v;
+		stepRule[filled] = r;
+		filled++;
+		fired[r.ordinal()]++;
+	}
+
+	private void removeFromPeers(int cell, int bit) {
+		for (int k = peerStart[cell], end = peerStart[cell + 1]; k < end; k++) {
+			cand[peers[k]] &= ~bit;
+		}
+	}
+}
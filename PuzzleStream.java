@@ -0,0 +1,203 @@
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Class PuzzleStream
+ * generates many puzzles on all cores and hands them out lazily, in
+ * order, as an Iterator or a Stream. Each worker thread has its own
+ * SudokuGenerator, and puzzle number i is generated from a random source
+ * seeded only from the run seed and i, so the same seed always gives the
+ * same puzzles no matter how the work is spread over the threads.
+ * Only a bounded number of puzzles are generated ahead of the consumer.
+ * Puzzles are made like those of MySudokuModel.generate, by
+ * SudokuGenerator.generate(Difficulty, SolveBudget), so they have the
+ * same clue counts and ratings.
+ *
+ * The window bounds the work done for puzzles the consumer never takes.
+ * A consumer that stops early, for example through limit or findFirst on
+ * the stream, should close the stream or the PuzzleStream, which stops
+ * the puzzles that are being generated and drops the ones waiting.
+ * The puzzles are 9x9 unless another SudokuGeometry is given.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class PuzzleStream implements Iterator<PuzzleStream.Puzzle>, AutoCloseable {
+
+	/**
+	 * class Puzzle
+	 * one generated puzzle and its solution, both row by row
+	 */
+	public static class Puzzle {
+		public final long index;
+		public final int[] puzzle;
+		public final int[] solution;
+
+		Puzzle(long index, int[] puzzle, int[] solution) {
+			this.index = index;
+			this.puzzle = puzzle;
+			this.solution = solution;
+		}
+
+		/**
+		 * toString
+		 * @return the puzzle and the solution as two strings of N*N
+		 * symbols separated by a space, 0 for empty squares, see
+		 * BoardFormat.symbol
+		 */
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(2*puzzle.length + 1);
+			for (int v : puzzle) sb.append(BoardFormat.symbol(v));
+			sb.append(' ');
+			for (int v : solution) sb.append(BoardFormat.symbol(v));
+			return sb.toString();
+		}
+	}
+
+	private final long count;
+	private final SudokuGeometry geometry;
+	private final MySudokuModel.Difficulty difficulty;
+	private final ThreadLocal<SudokuGenerator> generators;
+	private final long seed;
+	private final Executor executor;
+	private final int window;
+	private final ArrayDeque<CompletableFuture<Puzzle>> pending = new ArrayDeque<>();
+	private long submitted;
+	private final SolveBudget stop = new SolveBudget(); // cancelled by close
+
+	/**
+	 * constructor for a PuzzleStream using the common pool
+	 * @param count the number of puzzles
+	 * @param difficulty the difficulty of every puzzle
+	 * @param seed the seed the whole run is reproducible from
+	 */
+	public PuzzleStream(long count, MySudokuModel.Difficulty difficulty, long seed) {
+		this(count, difficulty, seed, ForkJoinPool.commonPool(),
+				4*ForkJoinPool.commonPool().getParallelism());
+	}
+
+	/**
+	 * constructor for a PuzzleStream
+	 * @param count the number of puzzles
+	 * @param difficulty the difficulty of every puzzle
+	 * @param seed the seed the whole run is reproducible from
+	 * @param executor runs the generation
+	 * @param window how many puzzles may be generated ahead of the consumer
+	 */
+	public PuzzleStream(long count, MySudokuModel.Difficulty difficulty, long seed,
+						Executor executor, int window) {
+		this(count, SudokuGeometry.STANDARD, difficulty, seed, executor, window);
+	}
+
+	/**
+	 * constructor for a PuzzleStream of any size
+	 * @param count the number of puzzles
+	 * @param geometry the size of the puzzles, which may be a variant
+	 * @param difficulty the difficulty of every puzzle, see Difficulty.clues
+	 * @param seed the seed the whole run is reproducible from
+	 * @param executor runs the generation
+	 * @param window how many puzzles may be generated ahead of the consumer
+	 */
+	public PuzzleStream(long count, SudokuGeometry geometry, MySudokuModel.Difficulty difficulty,
+						long seed, Executor executor, int window) {
+		this.count = count;
+		this.geometry = geometry;
+		this.difficulty = difficulty;
+		generators = ThreadLocal.withInitial(() -> new SudokuGenerator(new SplittableRandom(), geometry));
+		this.seed = seed;
+		this.executor = executor;
+		this.window = Math.max(1, window);
+	}
+
+	/**
+	 * stream
+	 * @param count the number of puzzles
+	 * @param difficulty the difficulty of every puzzle
+	 * @param seed the seed the whole run is reproducible from
+	 * @return an ordered, lazily generated stream of puzzles
+	 */
+	public static Stream<Puzzle> stream(long count, MySudokuModel.Difficulty difficulty, long seed) {
+		return stream(count, SudokuGeometry.STANDARD, difficulty, seed);
+	}
+
+	/**
+	 * stream
+	 * @param count the number of puzzles
+	 * @param geometry the size of the puzzles, which may be a variant
+	 * @param difficulty the difficulty of every puzzle
+	 * @param seed the seed the whole run is reproducible from
+	 * @return an ordered, lazily generated stream of puzzles, closing it
+	 * stops the puzzles generated ahead
+	 */
+	public static Stream<Puzzle> stream(long count, SudokuGeometry geometry,
+										MySudokuModel.Difficulty difficulty, long seed) {
+		PuzzleStream puzzles = new PuzzleStream(count, geometry, difficulty, seed,
+				ForkJoinPool.commonPool(), 4*ForkJoinPool.commonPool().getParallelism());
+		return StreamSupport.stream(Spliterators.spliterator(puzzles, count,
+				Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE), false)
+				.onClose(puzzles::close);
+	}
+
+	/**
+	 * close
+	 * stops the puzzles being generated ahead of the consumer and
+	 * starts no more, hasNext is false from then on
+	 */
+	@Override
+	public void close() {
+		stop.cancel();
+		for (CompletableFuture<Puzzle> f : pending) f.cancel(false);
+		pending.clear();
+		submitted = count;
+	}
+
+	@Override
+	public boolean hasNext() {
+		fill();
+		return !pending.isEmpty();
+	}
+
+	@Override
+	public Puzzle next() {
+		if (!hasNext()) throw new NoSuchElementException();
+		Puzzle p = pending.poll().join();
+		fill();
+		return p;
+	}
+
+	private void fill() {
+		while (pending.size() < window && submitted < count) {
+			long index = submitted++;
+			pending.add(CompletableFuture.supplyAsync(() -> generate(index), executor));
+		}
+	}
+
+	private Puzzle generate(long index) {
+		SudokuGenerator generator = generators.get();
+		generator.setRandom(new SplittableRandom(mix(seed + mix(index))));
+		int[] puzzle = generator.generate(difficulty, stop);
+		if (puzzle == null) return null; // closed
+		return new Puzzle(index, puzzle, generator.getSolution());
+	}
+
+	/**
+	 * mix
+	 * scrambles the bits of a long (fmix64, the finalizer of
+	 * MurmurHash3) so that neighbouring indexes give unrelated seeds
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return z ^ (z >>> 33);
+	}
+}
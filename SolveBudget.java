@@ -0,0 +1,122 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class SolveBudget
+ * limits how much work one solve may do: a number of search nodes, a
+ * deadline, and a flag that another thread can set to cancel. An engine
+ * that runs out of budget stops and reports it instead of searching on.
+ * The node limit applies to each call, the deadline and the
+ * cancellation to every call that uses the budget.
+ *
+ * SolveBudget b = new SolveBudget().maxNodes(1000000).timeout(50, TimeUnit.MILLISECONDS);
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class SolveBudget {
+
+	// how many nodes are searched between looks at the clock and the flag
+	static final int CHECK_INTERVAL = 1024;
+
+	private long maxNodes = Long.MAX_VALUE;
+	private long deadline;
+	private boolean hasDeadline;
+	private volatile boolean cancelled;
+	private final SolveBudget outer;	// this budget is also over when it is, may be null
+
+	/**
+	 * constructor for a SolveBudget without limits
+	 */
+	public SolveBudget() {
+		this(null);
+	}
+
+	/**
+	 * constructor for a SolveBudget that is also over when another budget
+	 * is, so part of a search can be cancelled on its own. The node limit
+	 * of the other budget is not taken over.
+	 * @param outer the other budget, or null for none
+	 */
+	public SolveBudget(SolveBudget outer) {
+		this.outer = outer;
+	}
+
+	/**
+	 * maxNodes
+	 * @param nodes the number of search nodes a call may visit
+	 * @return this budget
+	 */
+	public SolveBudget maxNodes(long nodes) {
+		if (nodes < 0)
+			throw new IllegalArgumentException("negative node limit");
+		maxNodes = nodes;
+		return this;
+	}
+
+	/**
+	 * deadline
+	 * @param nanoTime the value of System.nanoTime() when solving must stop
+	 * @return this budget
+	 */
+	public SolveBudget deadline(long nanoTime) {
+		deadline = nanoTime;
+		hasDeadline = true;
+		return this;
+	}
+
+	/**
+	 * timeout
+	 * sets the deadline to a time from now
+	 * @param time how long solving may go on
+	 * @param unit the unit of time
+	 * @return this budget
+	 */
+	public SolveBudget timeout(long time, TimeUnit unit) {
+		return deadline(System.nanoTime() + unit.toNanos(time));
+	}
+
+	/**
+	 * cancel
+	 * makes every search using this budget stop soon, may be called
+	 * from any thread
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * isCancelled
+	 * @return boolean true if cancel was called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * getMaxNodes
+	 * @return the number of search nodes a call may visit
+	 */
+	public long getMaxNodes() {
+		return maxNodes;
+	}
+
+	/**
+	 * isOver
+	 * @return boolean true if the deadline has passed, the budget was
+	 * cancelled or the outer budget is over. The node limit is checked
+	 * by the engines.
+	 */
+	public boolean isOver() {
+		return cancelled || (hasDeadline && System.nanoTime() - deadline >= 0)
+				|| (outer != null && outer.isOver());
+	}
+
+	/**
+	 * nodeLimit
+	 * @param start the nodes an engine had visited when the call began
+	 * @return the first node count that is over the budget of that call
+	 */
+	long nodeLimit(long start) {
+		return (maxNodes >= Long.MAX_VALUE - start) ? Long.MAX_VALUE : start + maxNodes + 1;
+	}
+}
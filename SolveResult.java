@@ -0,0 +1,113 @@
+/**
+ * Class SolveResult
+ * the outcome of a budgeted solve: whether the board has no, one or
+ * several solutions, or if the budget ran out first, together with the
+ * work it took.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class SolveResult {
+
+	public enum Status {SOLVED, UNSOLVABLE, MULTIPLE, BUDGET_EXHAUSTED};
+
+	private final Status status;
+	private final int solutions;
+	private final int[][] solution;
+	private final long nodes;
+	private final long nanos;
+	private SolverStats stats;
+
+	/**
+	 * constructor for a SolveResult
+	 * @param status the outcome
+	 * @param solutions the number of solutions found
+	 * @param solution the first solution found, or null
+	 * @param nodes the search nodes visited
+	 * @param nanos the time the solve took
+	 */
+	public SolveResult(Status status, int solutions, int[][] solution, long nodes, long nanos) {
+		this.status = status;
+		this.solutions = solutions;
+		this.solution = solution;
+		this.nodes = nodes;
+		this.nanos = nanos;
+	}
+
+	/**
+	 * of
+	 * the result of a search
+	 * @param found the number of solutions found
+	 * @param exhausted true if the search ran out of budget
+	 * @param solution the first solution found, or null
+	 * @param nodes the search nodes visited
+	 * @param nanos the time the search took
+	 * @return MULTIPLE if two solutions were found, even when the budget
+	 * ran out after that. Otherwise BUDGET_EXHAUSTED if the budget ran
+	 * out, or SOLVED or UNSOLVABLE. If the search stopped at the first
+	 * solution, SOLVED only means that a solution exists.
+	 */
+	public static SolveResult of(int found, boolean exhausted,
+								int[][] solution, long nodes, long nanos) {
+		Status status;
+		if (found > 1) status = Status.MULTIPLE;
+		else if (exhausted) status = Status.BUDGET_EXHAUSTED;
+		else status = (found == 0) ? Status.UNSOLVABLE : Status.SOLVED;
+		return new SolveResult(status, found, solution, nodes, nanos);
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * getSolutions
+	 * @return the number of solutions found before the search stopped
+	 */
+	public int getSolutions() {
+		return solutions;
+	}
+
+	/**
+	 * getSolution
+	 * @return the first solution found as a 9 by 9 matrix, or null
+	 */
+	public int[][] getSolution() {
+		return solution;
+	}
+
+	/**
+	 * getNodes
+	 * @return the number of search nodes visited
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * getNanos
+	 * @return the time spent searching in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * getStats
+	 * @return the stats of the search if a SolverListener was set on
+	 * the engine and the search ran on one thread, otherwise null
+	 */
+	public SolverStats getStats() {
+		return stats;
+	}
+
+	void setStats(SolverStats stats) {
+		this.stats = stats;
+	}
+
+	@Override
+	public String toString() {
+		return status.name().toLowerCase() + " (" + solutions + " solutions, "
+								+ nodes + " nodes, " + nanos/1000 + " us)";
+	}
+}
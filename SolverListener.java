@@ -0,0 +1,13 @@
+/**
+ * Interface SolverListener
+ * told about every search of an engine it is set on, see
+ * SudokuEngine.setSolverListener. The stats are reused by the engine for
+ * its next board, copy them to keep them. A listener set on engines of
+ * several threads is called from all of them.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public interface SolverListener {
+	void searched(SolverStats stats);
+}
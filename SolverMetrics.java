@@ -0,0 +1,63 @@
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Class SolverMetrics
+ * a SolverListener that adds up the stats of every search it is told
+ * about. It can be set on the engines of many threads at once and be
+ * registered as an MBean so the totals can be watched with JMX.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class SolverMetrics implements SolverListener, SolverMetricsMBean {
+
+	public static final String NAME = "sudoku:type=SolverMetrics";
+
+	private final SolverStats total = new SolverStats();
+
+	@Override
+	public synchronized void searched(SolverStats stats) {
+		total.add(stats);
+	}
+
+	/**
+	 * register
+	 * registers these metrics with the platform MBean server under NAME
+	 * @return this
+	 * @throws JMException if the name is taken
+	 */
+	public SolverMetrics register() throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(NAME));
+		return this;
+	}
+
+	/**
+	 * snapshot
+	 * @return a copy of the totals
+	 */
+	public synchronized SolverStats snapshot() {
+		return new SolverStats(total);
+	}
+
+	@Override
+	public synchronized void reset() {
+		total.reset();
+	}
+
+	@Override public synchronized long getCalls() { return total.calls; }
+	@Override public synchronized long getNodes() { return total.nodes; }
+	@Override public synchronized long getBacktracks() { return total.backtracks; }
+	@Override public synchronized long getSolutions() { return total.solutions; }
+	@Override public synchronized long getPropagated() { return total.propagated; }
+	@Override public synchronized long getLoadNanos() { return total.loadNanos; }
+	@Override public synchronized long getSearchNanos() { return total.searchNanos; }
+	@Override public synchronized int getMaxDepth() { return total.maxDepth; }
+	@Override public synchronized long[] getBranching() { return total.getBranching(); }
+
+	@Override
+	public synchronized String toString() {
+		return total.toString();
+	}
+}
@@ -0,0 +1,19 @@
+/**
+ * Interface SolverMetricsMBean
+ * the JMX view of SolverMetrics
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public interface SolverMetricsMBean {
+	long getCalls();
+	long getNodes();
+	long getBacktracks();
+	long getSolutions();
+	long getPropagated();
+	long getLoadNanos();
+	long getSearchNanos();
+	int getMaxDepth();
+	long[] getBranching();
+	void reset();
+}
@@ -0,0 +1,123 @@
+import java.util.Arrays;
+
+/**
+ * Class SolverStats
+ * what an engine did for one board: the time spent loading it (with
+ * the Propagator pass of SudokuSolver) and searching it, the squares the
+ * propagation filled, the search nodes, dead ends, the deepest level
+ * reached and how many branches each node had. The same class adds up
+ * the stats of many calls, see add.
+ *
+ * Dead ends are nodes where the chosen square or column has no candidate
+ * left, so the search has to go back. The branching histogram counts the
+ * nodes by their number of candidates, the last slot counts that many or
+ * more.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class SolverStats {
+
+	public static final int MAX_BRANCHING = 9;
+
+	long calls;
+	long nodes;
+	long backtracks;
+	long solutions;
+	long propagated;
+	long loadNanos;
+	long searchNanos;
+	int maxDepth;
+	final long[] branching = new long[MAX_BRANCHING + 1];
+
+	public SolverStats() {}
+
+	/**
+	 * constructor for copying a SolverStats object
+	 * @param s the stats to be copied
+	 */
+	public SolverStats(SolverStats s) {
+		add(s);
+	}
+
+	/**
+	 * reset
+	 * sets everything to 0, done by an engine when a board is loaded
+	 */
+	public void reset() {
+		calls = nodes = backtracks = solutions = propagated = loadNanos = searchNanos = 0;
+		maxDepth = 0;
+		Arrays.fill(branching, 0);
+	}
+
+	/**
+	 * node
+	 * records one search node, called by the engines
+	 * @param depth the number of values placed by the search so far
+	 * @param branches the number of candidates of the chosen square
+	 */
+	void node(int depth, int branches) {
+		if (depth > maxDepth) maxDepth = depth;
+		if (branches == 0) backtracks++;
+		branching[Math.min(branches, MAX_BRANCHING)]++;
+	}
+
+	/**
+	 * add
+	 * adds the stats of another call to these
+	 * @param s the stats to add
+	 */
+	public void add(SolverStats s) {
+		calls += s.calls;
+		nodes += s.nodes;
+		backtracks += s.backtracks;
+		solutions += s.solutions;
+		propagated += s.propagated;
+		loadNanos += s.loadNanos;
+		searchNanos += s.searchNanos;
+		maxDepth = Math.max(maxDepth, s.maxDepth);
+		for (int k = 0; k <= MAX_BRANCHING; k++) {
+			branching[k] += s.branching[k];
+		}
+	}
+
+	/** @return the number of searches */
+	public long getCalls() { return calls; }
+	/** @return the search nodes visited */
+	public long getNodes() { return nodes; }
+	/** @return the nodes where the search had to go back */
+	public long getBacktracks() { return backtracks; }
+	/** @return the solutions found */
+	public long getSolutions() { return solutions; }
+	/** @return the squares filled by propagation before the search */
+	public long getPropagated() { return propagated; }
+	/** @return the time spent loading and propagating in nanoseconds */
+	public long getLoadNanos() { return loadNanos; }
+	/** @return the time spent searching in nanoseconds */
+	public long getSearchNanos() { return searchNanos; }
+	/** @return the deepest level of the search */
+	public int getMaxDepth() { return maxDepth; }
+
+	/**
+	 * getBranching
+	 * @return a copy of the histogram, slot k is the number of nodes
+	 * with k candidates
+	 */
+	public long[] getBranching() {
+		return branching.clone();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(calls).append(" calls, ").append(nodes).append(" nodes, ")
+			.append(backtracks).append(" backtracks, depth ").append(maxDepth)
+			.append(", ").append(solutions).append(" solutions, ")
+			.append(propagated).append(" propagated, load ").append(loadNanos/1000)
+			.append(" us, search ").append(searchNanos/1000).append(" us, branching");
+		for (int k = 0; k <= MAX_BRANCHING; k++) {
+			sb.append(' ').append(branching[k]);
+		}
+		return sb.toString();
+	}
+}
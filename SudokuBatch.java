@@ -0,0 +1,346 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.management.JMException;
+
+/**
+ * Class SudokuBatch
+ * command line entry point that solves every .sud file in a directory
+ * without opening any window. The files are solved in parallel, one
+ * SudokuSolver per thread, and each one gets a status: solved,
+ * unsolvable, multiple or illegal. The results are written in the order
+ * of the file names as they are done. A corpus is solved in partitions
+ * of consecutive puzzles, and the results of a partition are written as
+ * soon as it and the partitions before it are done, so only a few
+ * partitions are held in memory at a time. A summary with puzzles per
+ * second, latency and explored search nodes is printed at the end.
+ *
+ * usage: java SudokuBatch (directory|corpusfile) [outputfile]
+ * A corpus file is either one puzzle of 81 characters per line or a
+ * PackedCorpus file.
+ *
+ * Each puzzle can be given a budget with -Dsudoku.maxNodes=n and
+ * -Dsudoku.timeoutMillis=t. A puzzle that runs out of it gets the
+ * status budget_exhausted instead of holding its thread.
+ * With -Dsudoku.stats=true the solver stats of all puzzles are added up
+ * by a SolverMetrics, registered with JMX while the run lasts and
+ * printed with the summary.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class SudokuBatch {
+
+	public enum Status {SOLVED, UNSOLVABLE, MULTIPLE, ILLEGAL, BUDGET_EXHAUSTED};
+
+	private static final SolverMetrics METRICS =
+								Boolean.getBoolean("sudoku.stats") ? new SolverMetrics() : null;
+	private static final ThreadLocal<SudokuSolver> SOLVERS = ThreadLocal.withInitial(() -> {
+		SudokuSolver solver = new SudokuSolver();
+		solver.setSolverListener(METRICS);
+		return solver;
+	});
+	private static final long MAX_NODES = Long.getLong("sudoku.maxNodes", 0);
+	private static final long TIMEOUT_MILLIS = Long.getLong("sudoku.timeoutMillis", 0);
+	// puzzles of a corpus solved by one task, and how many tasks run ahead of the output
+	private static final int PARTITION = 4096;
+	private static final int WINDOW = 2*ForkJoinPool.getCommonPoolParallelism();
+
+	/**
+	 * class Result
+	 * the outcome of solving one file
+	 */
+	public static class Result {
+		public final String name;
+		public final Status status;
+		public final int[][] solution;
+		public final long nanos;
+		public final long nodes;
+
+		Result(String name, Status status, int[][] solution, long nanos, long nodes) {
+			this.name = name; this.status = status; this.solution = solution;
+			this.nanos = nanos; this.nodes = nodes;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder(name).append(' ')
+										.append(status.name().toLowerCase());
+			if (solution != null) {
+				sb.append(' ');
+				for (int[] row : solution) {
+					for (int val : row) sb.append((char) ('0' + val));
+				}
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * class Tally
+	 * the counters the summary is made from, so that a run does not keep
+	 * its results. The latencies are counted in a histogram with 16
+	 * slots for every power of two of nanoseconds, so a percentile read
+	 * from it is at most 1/16 above the real one.
+	 */
+	static class Tally {
+		private static final int SUB_BITS = 4;
+		private static final int SUB = 1 << SUB_BITS;
+
+		final long[] statusCount = new long[Status.values().length];
+		private final long[] latency = new long[(64 - SUB_BITS)*SUB];
+		long puzzles;
+		long nanos;
+		long nodes;
+
+		void add(Result r) {
+			statusCount[r.status.ordinal()]++;
+			latency[slot(r.nanos)]++;
+			puzzles++;
+			nanos += r.nanos;
+			nodes += r.nodes;
+		}
+
+		void add(Tally t) {
+			for (int i = 0; i < statusCount.length; i++) statusCount[i] += t.statusCount[i];
+			for (int i = 0; i < latency.length; i++) latency[i] += t.latency[i];
+			puzzles += t.puzzles;
+			nanos += t.nanos;
+			nodes += t.nodes;
+		}
+
+		/**
+		 * percentile
+		 * @param q a fraction from 0 to 1
+		 * @return the largest latency of the histogram slot that holds
+		 * the latency q of the puzzles are below, in nanoseconds
+		 */
+		long percentile(double q) {
+			long rank = Math.max(1, (long) Math.ceil(puzzles*q));
+			long seen = 0;
+			for (int s = 0; s < latency.length; s++) {
+				seen += latency[s];
+				if (seen >= rank) return top(s);
+			}
+			return 0;
+		}
+
+		private static int slot(long nanos) {
+			if (nanos < SUB) return (int) Math.max(0, nanos);
+			int e = 63 - Long.numberOfLeadingZeros(nanos);
+			return ((e - SUB_BITS + 1) << SUB_BITS) + (int) ((nanos >>> (e - SUB_BITS)) & (SUB - 1));
+		}
+
+		private static long top(int slot) {
+			if (slot < SUB) return slot;
+			int shift = (slot >>> SUB_BITS) - 1;
+			return ((long) (SUB + (slot & (SUB - 1)) + 1) << shift) - 1;
+		}
+	}
+
+	/**
+	 * class Partition
+	 * the output lines and the counters of one partition of a corpus
+	 */
+	private static class Partition {
+		final StringBuilder text = new StringBuilder();
+		final Tally tally = new Tally();
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: java SudokuBatch (directory|corpusfile) [outputfile]");
+			System.exit(2);
+		}
+		Path src = Paths.get(args[0]);
+		if (METRICS != null) {
+			try {
+				METRICS.register();
+			} catch (JMException e) {
+				System.err.println("solver metrics not registered: " + e);
+			}
+		}
+		long start = System.nanoTime();
+		Tally tally;
+		try (PrintWriter out = (args.length > 1)
+				? new PrintWriter(Files.newBufferedWriter(Paths.get(args[1])))
+				: new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)))) {
+			tally = Files.isDirectory(src) ? solveDirectory(src, out) : solveCorpus(src, out);
+		}
+		long wall = System.nanoTime() - start;
+		System.err.print(summary(tally, wall));
+		if (METRICS != null)
+			System.err.println("solver " + METRICS);
+	}
+
+	/**
+	 * solveDirectory
+	 * solves every .sud file of a directory and writes the results in
+	 * the order of the file names, each as soon as the files before it
+	 * are done. Only the paths are listed up front.
+	 * @param dir the directory
+	 * @param out where a line is written for every file
+	 * @return the counters of the run
+	 */
+	public static Tally solveDirectory(Path dir, PrintWriter out) throws IOException {
+		List<Path> files;
+		try (Stream<Path> list = Files.list(dir)) {
+			files = list.filter(p -> p.toString().endsWith(".sud"))
+						.sorted(Comparator.comparing(p -> p.getFileName().toString()))
+						.collect(Collectors.toList());
+		}
+		Tally tally = new Tally();
+		files.parallelStream()
+				.map(SudokuBatch::solveFile)
+				.forEachOrdered(r -> {
+					tally.add(r);
+					out.println(r);
+				});
+		return tally;
+	}
+
+	/**
+	 * solveCorpus
+	 * solves every puzzle of a text or packed corpus file, read through
+	 * a MappedCorpus, and writes the results in corpus order. Results are
+	 * named by the puzzle number. The partitions are solved on the common
+	 * pool, at most WINDOW of them ahead of the one being written.
+	 * @param file the corpus
+	 * @param out where a line is written for every puzzle
+	 * @return the counters of the run
+	 */
+	public static Tally solveCorpus(Path file, PrintWriter out) throws IOException {
+		Tally tally = new Tally();
+		ArrayDeque<CompletableFuture<Partition>> pending = new ArrayDeque<>();
+		try (MappedCorpus corpus = new MappedCorpus(file)) {
+			long size = corpus.size();
+			long next = 0;
+			while (next < size || !pending.isEmpty()) {
+				while (pending.size() < WINDOW && next < size) {
+					long from = next, to = Math.min(size, from + PARTITION);
+					pending.add(CompletableFuture.supplyAsync(() -> solvePartition(corpus, from, to)));
+					next = to;
+				}
+				Partition done = pending.poll().join();
+				out.print(done.text);
+				tally.add(done.tally);
+			}
+		} finally {
+			for (CompletableFuture<Partition> f : pending) f.cancel(false);
+		}
+		return tally;
+	}
+
+	/**
+	 * solvePartition
+	 * @return the output lines and counters of the puzzles from one
+	 * index up to another
+	 */
+	private static Partition solvePartition(MappedCorpus corpus, long from, long to) {
+		Partition part = new Partition();
+		String eol = System.lineSeparator();
+		corpus.scan(from, to, (i, cells) -> {
+			Result r = solve(Long.toString(i), cells);
+			part.tally.add(r);
+			part.text.append(r).append(eol);
+		});
+		return part;
+	}
+
+	/**
+	 * solveFile
+	 * reads and solves one file. The time spent reading the file is
+	 * not part of the latency.
+	 * @param file path to a .sud file
+	 * @return the result, illegal if the file can not be read or parsed
+	 */
+	public static Result solveFile(Path file) {
+		String name = file.getFileName().toString();
+		int[] cells;
+		try {
+			cells = parse(Files.readAllBytes(file));
+		} catch (IOException e) {
+			cells = null;
+		}
+		if (cells == null)
+			return new Result(name, Status.ILLEGAL, null, 0, 0);
+		return solve(name, cells);
+	}
+
+	/**
+	 * solve
+	 * solves a board with the SudokuSolver of the current thread
+	 * @param name name reported in the result
+	 * @param cells the board row by row, 81 values where 0 is empty
+	 * @return the result with the solution if it is unique
+	 */
+	public static Result solve(String name, int[] cells) {
+		SudokuSolver solver = SOLVERS.get();
+		long t0 = System.nanoTime();
+		if (!solver.load(cells))
+			return new Result(name, Status.ILLEGAL, null, System.nanoTime() - t0, 0);
+		int n = solver.countSolutions(2, budget());
+		long nanos = System.nanoTime() - t0;
+		Status status = (n > 1) ? Status.MULTIPLE
+				: solver.isExhausted() ? Status.BUDGET_EXHAUSTED
+				: (n == 0) ? Status.UNSOLVABLE : Status.SOLVED;
+		return new Result(name, status, (status == Status.SOLVED) ? solver.getSolution() : null,
+							nanos, solver.getNodes());
+	}
+
+	/**
+	 * budget
+	 * @return a new budget for one puzzle from the system properties,
+	 * or null if none is set
+	 */
+	private static SolveBudget budget() {
+		if (MAX_NODES <= 0 && TIMEOUT_MILLIS <= 0) return null;
+		SolveBudget b = new SolveBudget();
+		if (MAX_NODES > 0) b.maxNodes(MAX_NODES);
+		if (TIMEOUT_MILLIS > 0) b.timeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		return b;
+	}
+
+	/**
+	 * parse
+	 * parses a sudoku the same way MySudokuModel.setBoard(String) does,
+	 * see BoardFormat
+	 * @param input the text of the file
+	 * @return the board row by row or null if the format is wrong
+	 */
+	static int[] parse(byte[] input) {
+		int[] cells = new int[81];
+		return BoardFormat.parse(input, 0, input.length, cells) ? cells : null;
+	}
+
+	/**
+	 * summary
+	 * @param tally the counters of the run
+	 * @param wall the wall clock time of the run in nanoseconds
+	 * @return throughput, status counts, latency and nodes as text
+	 */
+	static String summary(Tally tally, long wall) {
+		long[] statusCount = tally.statusCount;
+		long n = tally.puzzles, nodes = tally.nodes;
+		double mean = (n == 0) ? 0 : tally.nanos / (double) n / 1000;
+		double p99 = (n == 0) ? 0 : tally.percentile(0.99) / 1000.0;
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d puzzles in %.3f s, %.1f puzzles/s%n",
+						n, wall / 1e9, n / (wall / 1e9)));
+		for (Status s : Status.values()) {
+			sb.append(s.name().toLowerCase()).append(' ')
+							.append(statusCount[s.ordinal()]).append("  ");
+		}
+		sb.append(System.lineSeparator());
+		sb.append(String.format("latency mean %.1f us, p99 %.1f us%n", mean, p99));
+		sb.append(String.format("nodes explored %d%n", nodes));
+		return sb.toString();
+	}
+}
@@ -0,0 +1,31 @@
+/**
+ * Interface SudokuEngine
+ * a solving engine the model can delegate to. The engine is loaded
+ * with a board, searches it and keeps the first solution it finds.
+ * A search can be given a SolveBudget, and stops early when it runs out.
+ * An engine solves boards of one size, see getGeometry.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public interface SudokuEngine {
+	boolean load(int[][] board);
+	boolean load(int[] cells);
+	int countSolutions(int limit);
+	int countSolutions(int limit, SolveBudget budget);
+	/** @return true if the last search stopped because its budget ran out */
+	boolean isExhausted();
+	int[][] getSolution();
+	long getNodes();
+	/** @return the size of the boards the engine solves */
+	SudokuGeometry getGeometry();
+	/**
+	 * setSolverListener
+	 * turns on the SolverStats of every load and search, which are
+	 * handed to the listener after each search. Off when null, which is
+	 * the default, and then nothing is recorded.
+	 */
+	void setSolverListener(SolverListener listener);
+	/** @return the stats of the last board, or null if there is no listener */
+	SolverStats getStats();
+}
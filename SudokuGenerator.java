@@ -0,0 +1,410 @@
+import java.util.SplittableRandom;
+import java.util.function.IntConsumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Class SudokuGenerator
+ * generates sudokus with a unique solution, 9x9 unless another
+ * SudokuGeometry is given, which may be a variant. A random full grid is
+ * made first, then clues are removed in random order. A clue is only
+ * removed if the puzzle stays unique, which is checked by searching for
+ * a solution with another value in that square. If a pass over all the
+ * clues ends above the requested number of clues, a removed clue is put
+ * back and the pass is repeated on the new set of clues, so the work done
+ * so far is kept instead of starting over. A difficulty score is only
+ * computed once the requested number of clues is reached, as grading
+ * costs far more than a uniqueness check.
+ *
+ * One generator is not meant to be used by several threads at once, but
+ * any number of generators can run in parallel.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class SudokuGenerator {
+
+	// how many times a clue is put back before giving up on the target
+	private static final int MAX_RETRIES = 200;
+	// the score of a puzzle that has not been graded yet
+	private static final int NOT_GRADED = Integer.MIN_VALUE;
+	// the search for a full grid of a variant starts over after this many nodes
+	private static final long FILL_NODES = 100_000;
+	// how many grids generate(Difficulty, SolveBudget) tries before giving up
+	private static final int MAX_GRIDS = 50;
+
+	private SplittableRandom random;
+	private final SudokuGeometry geometry;
+	private final int size;
+	private final int cellCount;
+	private final SudokuSolver solver;
+	private final int[] solution;
+	private final int[] puzzle;
+	private final int[] best;	// the puzzle with the fewest clues of the current generate
+	private boolean onTarget;	// the last puzzle met its clue count and score band
+	private final int[] order;
+	private final DifficultyGrader grader; // null unless 9x9
+	private IntConsumer progress; // null if nobody listens
+
+	/**
+	 * constructor for a SudokuGenerator of 9x9 sudokus
+	 * @param random the random source, the same seed gives the same puzzles
+	 */
+	public SudokuGenerator(SplittableRandom random) {
+		this(random, SudokuGeometry.STANDARD);
+	}
+
+	/**
+	 * constructor for a SudokuGenerator
+	 * @param random the random source, the same seed gives the same puzzles
+	 * @param geometry the size of the sudokus
+	 */
+	public SudokuGenerator(SplittableRandom random, SudokuGeometry geometry) {
+		this.random = random;
+		this.geometry = geometry;
+		size = geometry.size;
+		cellCount = geometry.cells;
+		solver = new SudokuSolver(geometry);
+		solution = new int[cellCount];
+		puzzle = new int[cellCount];
+		best = new int[cellCount];
+		order = new int[cellCount];
+		grader = (geometry == SudokuGeometry.STANDARD) ? new DifficultyGrader() : null;
+	}
+
+	/**
+	 * setRandom
+	 * replaces the random source, for example to make one puzzle
+	 * reproducible from its own seed
+	 * @param random the new random source
+	 */
+	public void setRandom(SplittableRandom random) {
+		this.random = random;
+	}
+
+	/**
+	 * setProgressListener
+	 * @param progress gets how far generate has come towards the clue
+	 * target, in percent from 0 to 99, each time it grows. null to stop.
+	 */
+	public void setProgressListener(IntConsumer progress) {
+		this.progress = progress;
+	}
+
+	/**
+	 * generate
+	 * generates a puzzle with at most maxClues clues, or as few clues as
+	 * could be reached if no unique puzzle with that many was found
+	 * @param maxClues the wanted number of clues
+	 * @return the puzzle row by row, 0 for empty squares
+	 */
+	public int[] generate(int maxClues) {
+		return generate(maxClues, null, 0);
+	}
+
+	/**
+	 * generate
+	 * generates a puzzle with at most maxClues clues and a difficulty
+	 * score of at least minScore. Clues are removed until both are met.
+	 * @param maxClues the wanted number of clues
+	 * @param score gives the difficulty of a puzzle, null to only
+	 * look at the number of clues
+	 * @param minScore the lowest accepted score
+	 * @return the puzzle row by row, 0 for empty squares. If the target
+	 * could not be reached it is the puzzle with the fewest clues found,
+	 * which may have a score outside the band, see isOnTarget.
+	 */
+	public int[] generate(int maxClues, ToIntFunction<int[]> score, int minScore) {
+		return generate(maxClues, score, minScore, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * generate
+	 * generates a puzzle with at most maxClues clues that a
+	 * DifficultyGrader rates between minRating and maxRating. The
+	 * grader only knows 9x9 sudokus, other sizes only look at the clues.
+	 * @param maxClues the wanted number of clues
+	 * @param minRating the lowest accepted rating
+	 * @param maxRating the highest accepted rating
+	 * @return the puzzle row by row, see generate(int, ToIntFunction, int, int)
+	 */
+	public int[] generate(int maxClues, int minRating, int maxRating) {
+		return generate(maxClues, minRating, maxRating, null);
+	}
+
+	/**
+	 * generate
+	 * like generate(int, int, int) but stops when the budget runs out
+	 * @param maxClues the wanted number of clues
+	 * @param minRating the lowest accepted rating
+	 * @param maxRating the highest accepted rating
+	 * @param budget the budget of every search, or null for none
+	 * @return the puzzle row by row, or null if the budget ran out
+	 */
+	public int[] generate(int maxClues, int minRating, int maxRating, SolveBudget budget) {
+		return generate(maxClues, (grader != null) ? grader::rate : null, minRating, maxRating, budget);
+	}
+
+	/**
+	 * generate
+	 * generates a puzzle with at most maxClues clues and a difficulty
+	 * score between minScore and maxScore. Clues are removed without
+	 * grading until the puzzle has maxClues clues. Then it is graded, and
+	 * while its score is below minScore further clues are removed, each
+	 * only if the score stays at most maxScore. A puzzle that scores
+	 * above maxScore gets a clue back and another pass.
+	 * @param maxClues the wanted number of clues
+	 * @param score gives the difficulty of a puzzle, null to only
+	 * look at the number of clues
+	 * @param minScore the lowest accepted score
+	 * @param maxScore the highest accepted score
+	 * @return the puzzle row by row, 0 for empty squares. If the target
+	 * could not be reached it is the puzzle with the fewest clues found,
+	 * which may have a score outside the band, see isOnTarget.
+	 */
+	public int[] generate(int maxClues, ToIntFunction<int[]> score, int minScore, int maxScore) {
+		return generate(maxClues, score, minScore, maxScore, null);
+	}
+
+	/**
+	 * generate
+	 * like generate(int, ToIntFunction, int, int) but stops when the
+	 * budget runs out. Its node limit holds for each uniqueness check.
+	 * @param maxClues the wanted number of clues
+	 * @param score gives the difficulty of a puzzle, null to only
+	 * look at the number of clues
+	 * @param minScore the lowest accepted score
+	 * @param maxScore the highest accepted score
+	 * @param budget the budget of every search, or null for none
+	 * @return the puzzle row by row, or null if the budget ran out
+	 */
+	public int[] generate(int maxClues, ToIntFunction<int[]> score, int minScore, int maxScore,
+							SolveBudget budget) {
+		onTarget = false;
+		if (!fillGrid(budget))
+			return null;
+		System.arraycopy(solution, 0, puzzle, 0, cellCount);
+		System.arraycopy(solution, 0, best, 0, cellCount);
+		int clues = cellCount, bestClues = cellCount;
+		int current = NOT_GRADED;
+		int reported = -1;
+		for (int i = 0; i < cellCount; i++) order[i] = i;
+		for (int retry = 0; retry <= MAX_RETRIES; retry++) {
+			shuffle(order);
+			for (int k = 0; k < cellCount; k++) {
+				if (clues <= maxClues) {
+					if (score == null) break;
+					if (current == NOT_GRADED) current = score.applyAsInt(puzzle);
+					if (current >= minScore) break;
+				}
+				int cell = order[k];
+				int val = puzzle[cell];
+				if (val == 0 || !removeClue(cell, budget)) {
+					if (budget != null && budget.isOver()) return null;
+					continue;
+				}
+				if (current != NOT_GRADED) { // past the clue target, the score decides
+					int s = score.applyAsInt(puzzle);
+					if (s > maxScore) {
+						puzzle[cell] = val;
+						continue;
+					}
+					current = s;
+				}
+				clues--;
+				if (progress != null && clues < bestClues) {
+					int percent = Math.min(99, 100*(cellCount - clues)/Math.max(1, cellCount - maxClues));
+					if (percent > reported) progress.accept(reported = percent);
+				}
+			}
+			if (clues < bestClues) {
+				System.arraycopy(puzzle, 0, best, 0, cellCount);
+				bestClues = clues;
+			}
+			if (clues <= maxClues && (score == null
+					|| (current >= minScore && current <= maxScore))) {
+				onTarget = true;
+				return puzzle.clone();
+			}
+			// put back a random clue and try another pass from here
+			int cell;
+			do {
+				cell = random.nextInt(cellCount);
+			} while (puzzle[cell] != 0);
+			puzzle[cell] = solution[cell];
+			clues++;
+			current = NOT_GRADED;
+		}
+		return best.clone();
+	}
+
+	/**
+	 * generate
+	 * generates a puzzle of a difficulty, see MySudokuModel.Difficulty:
+	 * at most difficulty.clues(geometry) clues and, on 9x9 boards, a
+	 * DifficultyGrader rating in its band. Difficulties with atLeast then
+	 * get clues of the solution back until they have exactly that many,
+	 * which keeps the puzzle unique. A puzzle that misses the target is
+	 * thrown away and a new grid is tried, so a puzzle is never handed
+	 * out as a difficulty it does not have.
+	 * @param difficulty the difficulty of the puzzle
+	 * @param budget the budget of every search, or null for none
+	 * @return the puzzle row by row, or null if the budget ran out
+	 * @throws IllegalStateException if MAX_GRIDS grids in a row missed
+	 * the target
+	 */
+	public int[] generate(MySudokuModel.Difficulty difficulty, SolveBudget budget) {
+		int clues = difficulty.clues(geometry);
+		for (int grid = 0; grid < MAX_GRIDS; grid++) {
+			int[] p = generate(clues, difficulty.minRating, difficulty.maxRating, budget);
+			if (p == null) return null;
+			if (!onTarget) continue;
+			if (difficulty.atLeast) {
+				for (int n = countClues(p); n < clues; ) {
+					int cell = random.nextInt(cellCount);
+					if (p[cell] == 0) {
+						p[cell] = solution[cell];
+						n++;
+					}
+				}
+			}
+			return p;
+		}
+		throw new IllegalStateException("no " + difficulty + " puzzle in " + MAX_GRIDS + " grids");
+	}
+
+	/**
+	 * isOnTarget
+	 * @return boolean true if the last puzzle generate returned has at
+	 * most maxClues clues and a score in the band, false if it is only
+	 * the closest one found
+	 */
+	public boolean isOnTarget() {
+		return onTarget;
+	}
+
+	/**
+	 * getSolution
+	 * @return the solution of the last generated puzzle, row by row
+	 */
+	public int[] getSolution() {
+		return solution.clone();
+	}
+
+	/**
+	 * countClues
+	 * @param cells a board row by row
+	 * @return the number of filled squares
+	 */
+	public static int countClues(int[] cells) {
+		int clues = 0;
+		for (int v : cells) {
+			if (v != 0) clues++;
+		}
+		return clues;
+	}
+
+	/**
+	 * removeClue
+	 * removes a clue if the puzzle stays unique, otherwise leaves it
+	 * @param cell the square of the clue
+	 * @param budget the budget of the check, or null for none
+	 * @return boolean true if the clue was removed, false if not or if
+	 * the budget ran out first
+	 */
+	private boolean removeClue(int cell, SolveBudget budget) {
+		int val = puzzle[cell];
+		puzzle[cell] = 0;
+		if (solver.loadExcluding(puzzle, cell, val) && solver.countSolutions(1, budget) == 0
+				&& !solver.isExhausted())
+			return true;
+		puzzle[cell] = val;
+		return false;
+	}
+
+	/**
+	 * fillGrid
+	 * makes a random full grid. The blocks on the diagonal do not
+	 * share any row or column, so they are filled with random permutations
+	 * and the solver completes the rest. On 4x4 boards some diagonals can
+	 * not be completed, then new permutations are drawn.
+	 *
+	 * On variants only the first row gets a random permutation, and the
+	 * search starts over with a new one if it takes too long. A row can
+	 * break a sum, so variants with sums start from an empty board and
+	 * always get the same full grid.
+	 * @param budget the budget of the searches, or null for none
+	 * @return boolean false if the budget ran out first
+	 * @throws IllegalStateException if a variant with sums has no solution
+	 */
+	private boolean fillGrid(SolveBudget budget) {
+		int box = geometry.box;
+		int[] cells = new int[cellCount];
+		int[] digits = new int[size];
+		for (int v = 0; v < size; v++) digits[v] = v + 1;
+		if (!geometry.isClassic()) {
+			return fillVariant(cells, digits, budget);
+		}
+		while (true) {
+			if (budget != null && budget.isOver()) return false;
+			for (int b = 0; b < box; b++) {
+				shuffle(digits);
+				for (int k = 0; k < size; k++) {
+					cells[(b*box + k/box)*size + b*box + k%box] = digits[k];
+				}
+			}
+			solver.load(cells);
+			if (solver.countSolutions(1, budget) > 0) break;
+			if (solver.isExhausted()) return false; // a node limit does not make the budget over
+		}
+		copySolution();
+		return true;
+	}
+
+	/**
+	 * fillVariant
+	 * the part of fillGrid for variants
+	 * @param cells an empty board
+	 * @param digits the values 1 to N
+	 * @param budget the budget of the searches, or null for none
+	 * @return boolean false if the budget ran out first
+	 */
+	private boolean fillVariant(int[] cells, int[] digits, SolveBudget budget) {
+		if (geometry.hasSums()) {
+			solver.load(cells);
+			if (solver.countSolutions(1, budget) == 0) {
+				if (solver.isExhausted()) return false;
+				throw new IllegalStateException("the variant has no solution");
+			}
+		} else {
+			do {
+				if (budget != null && budget.isOver()) return false;
+				shuffle(digits);
+				System.arraycopy(digits, 0, cells, 0, size);
+			} while (!solver.load(cells)
+					|| solver.countSolutions(1, new SolveBudget(budget).maxNodes(FILL_NODES)) == 0);
+		}
+		copySolution();
+		return true;
+	}
+
+	private void copySolution() {
+		int[][] full = solver.getSolution();
+		for (int i = 0; i < cellCount; i++) {
+			solution[i] = full[i/size][i%size];
+		}
+	}
+
+	/**
+	 * shuffle
+	 * random permutation of an integer array using Fisher-Yates shuffle
+	 * @param a the array to be shuffled in place
+	 */
+	private void shuffle(int[] a) {
+		for (int i = a.length - 1; i > 0; i--) {
+			int index = random.nextInt(i + 1);
+			int temp = a[index];
+			a[index] = a[i];
+			a[i] = temp;
+		}
+	}
+}
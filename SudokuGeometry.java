@@ -0,0 +1,436 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class SudokuGeometry
+ * the shape of a sudoku with blocks of box by box squares, so the board
+ * has N = box*box rows, columns, blocks and values. The row, column and
+ * block of every square, its peers and the squares of every unit are
+ * worked out once per size and shared by everything that uses that size.
+ *
+ * Variants such as diagonals, jigsaw regions and killer cages are built
+ * with a Builder, see SudokuVariant. They end up in the same tables: a
+ * jigsaw region takes the place of a block, a diagonal is one more unit,
+ * and every constraint adds to the peers of its squares. Constraints
+ * that are not units, like cages, are kept as groups of squares that may
+ * not repeat a value and may have a sum.
+ *
+ * Values are kept as bits 1..N of an int, which is enough for box
+ * sizes up to 5 (25x25 boards).
+ *
+ * Squares are numbered row*N + column. Units are numbered rows first,
+ * then columns, then blocks, then the extra units, N squares each.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public final class SudokuGeometry {
+
+	public static final int MIN_BOX = 2;
+	public static final int MAX_BOX = 5;
+
+	private static final SudokuGeometry[] SHAPES = new SudokuGeometry[MAX_BOX + 1];
+
+	static {
+		for (int b = MIN_BOX; b <= MAX_BOX; b++) {
+			SHAPES[b] = new Builder(b).build();
+		}
+	}
+
+	/** the classic 9x9 sudoku */
+	public static final SudokuGeometry STANDARD = SHAPES[3];
+
+	public final int box;
+	public final int size;		// N, the number of squares in a unit
+	public final int cells;		// N*N
+	public final int all;		// bit v set for v = 1..N
+	public final int unitCount;	// 3N plus the extra units
+	public final int groupCount;	// the extra units and the other groups
+
+	final int[] row;
+	final int[] col;
+	final int[] block;	// the jigsaw region on irregular boards
+	final int[] peers;	// the peers of square i are peerStart[i]..peerStart[i+1]-1
+	final int[] peerStart;
+	final int[] units;	// unitCount units of N squares
+	// the squares of group g are groupStart[g]..groupStart[g+1]-1 in groupCells
+	final int[] groupCells;
+	final int[] groupStart;
+	final int[] groupSum;	// 0 if the group has no sum
+	// the groups of square i are cellGroupStart[i]..cellGroupStart[i+1]-1 in cellGroups
+	final int[] cellGroups;
+	final int[] cellGroupStart;
+
+	private final boolean regular;	// the blocks are box by box
+	private final boolean sums;
+
+	private SudokuGeometry(Builder b) {
+		box = b.box;
+		size = b.size;
+		cells = size*size;
+		all = ((1 << size) - 1) << 1;
+		regular = b.regions == null;
+		row = new int[cells];
+		col = new int[cells];
+		block = new int[cells];
+		for (int i = 0; i < cells; i++) {
+			row[i] = i/size;
+			col[i] = i%size;
+			block[i] = regular ? (row[i]/box)*box + col[i]/box : b.regions[i];
+		}
+
+		// the extra units are groups as well, they come first
+		int extra = b.houses.size();
+		unitCount = 3*size + extra;
+		groupCount = b.groups.size();
+		units = new int[unitCount*size];
+		int[] filled = new int[size];
+		for (int i = 0; i < cells; i++) {
+			units[row[i]*size + col[i]] = i;
+			units[(size + col[i])*size + row[i]] = i;
+			units[(2*size + block[i])*size + filled[block[i]]++] = i;
+		}
+		for (int h = 0; h < extra; h++) {
+			System.arraycopy(b.houses.get(h), 0, units, (3*size + h)*size, size);
+		}
+		groupStart = new int[groupCount + 1];
+		groupSum = new int[groupCount];
+		int[] members = new int[cells + 1];
+		for (int g = 0; g < groupCount; g++) {
+			int[] squares = b.groups.get(g);
+			groupStart[g + 1] = groupStart[g] + squares.length;
+			groupSum[g] = b.sums.get(g);
+			for (int i : squares) members[i + 1]++;
+		}
+		groupCells = new int[groupStart[groupCount]];
+		for (int g = 0; g < groupCount; g++) {
+			System.arraycopy(b.groups.get(g), 0, groupCells, groupStart[g], groupStart[g+1] - groupStart[g]);
+		}
+		cellGroupStart = new int[cells + 1];
+		for (int i = 0; i < cells; i++) {
+			cellGroupStart[i + 1] = cellGroupStart[i] + members[i + 1];
+		}
+		cellGroups = new int[cellGroupStart[cells]];
+		int[] at = Arrays.copyOf(cellGroupStart, cells);
+		for (int g = 0; g < groupCount; g++) {
+			for (int k = groupStart[g]; k < groupStart[g + 1]; k++) {
+				cellGroups[at[groupCells[k]]++] = g;
+			}
+		}
+		sums = b.sums.stream().anyMatch(s -> s > 0);
+
+		// the peers in order of their index
+		peerStart = new int[cells + 1];
+		int[] list = new int[cells*cells];
+		boolean[] peer = new boolean[cells];
+		for (int i = 0; i < cells; i++) {
+			Arrays.fill(peer, false);
+			for (int k = cellGroupStart[i]; k < cellGroupStart[i + 1]; k++) {
+				int g = cellGroups[k];
+				for (int m = groupStart[g]; m < groupStart[g + 1]; m++) peer[groupCells[m]] = true;
+			}
+			int n = peerStart[i];
+			for (int j = 0; j < cells; j++) {
+				if (j != i && (peer[j] || row[j] == row[i] || col[j] == col[i] || block[j] == block[i]))
+					list[n++] = j;
+			}
+			peerStart[i + 1] = n;
+		}
+		peers = Arrays.copyOf(list, peerStart[cells]);
+	}
+
+	/**
+	 * of
+	 * @param box the width of a block, from 2 to 5
+	 * @return the shared geometry of that size
+	 * @throws IllegalArgumentException if the size is not supported
+	 */
+	public static SudokuGeometry of(int box) {
+		if (box < MIN_BOX || box > MAX_BOX)
+			throw new IllegalArgumentException("unsupported box size " + box);
+		return SHAPES[box];
+	}
+
+	/**
+	 * builder
+	 * @param box the width of a block, from 2 to 5
+	 * @return a Builder for a variant of that size
+	 * @throws IllegalArgumentException if the size is not supported
+	 */
+	public static Builder builder(int box) {
+		return new Builder(box);
+	}
+
+	/**
+	 * blockIndex
+	 * @param row the row index
+	 * @param col the column index
+	 * @return the block of the square, counted row by row, or the
+	 * jigsaw region of it
+	 */
+	public int blockIndex(int row, int col) {
+		return block[row*size + col];
+	}
+
+	/**
+	 * isRegular
+	 * @return boolean true if the blocks are box by box squares and not
+	 * jigsaw regions
+	 */
+	public boolean isRegular() {
+		return regular;
+	}
+
+	/**
+	 * isClassic
+	 * @return boolean true if rows, columns and box by box blocks are the
+	 * only constraints
+	 */
+	public boolean isClassic() {
+		return regular && groupCount == 0;
+	}
+
+	/**
+	 * hasSums
+	 * @return boolean true if some group has a sum, like a killer cage
+	 */
+	public boolean hasSums() {
+		return sums;
+	}
+
+	/**
+	 * isHouse
+	 * @param g a group
+	 * @return boolean true if the group is an extra unit that holds
+	 * every value once, these are the groups 0 to unitCount-3N-1
+	 */
+	public boolean isHouse(int g) {
+		return g < unitCount - 3*size;
+	}
+
+	/**
+	 * peerCount
+	 * @param cell the square index
+	 * @return the number of peers of the square
+	 */
+	public int peerCount(int cell) {
+		return peerStart[cell + 1] - peerStart[cell];
+	}
+
+	/**
+	 * minSum
+	 * @param n a number of squares, at most N
+	 * @return the smallest sum of n different values
+	 */
+	static int minSum(int n) {
+		return n*(n + 1)/2;
+	}
+
+	/**
+	 * maxSum
+	 * @param n a number of squares, at most N
+	 * @return the largest sum of n different values
+	 */
+	int maxSum(int n) {
+		return n*(2*size - n + 1)/2;
+	}
+
+	/**
+	 * sumRange
+	 * the values a square of a group with a sum can take so that the
+	 * rest of the group can still reach the sum with different values
+	 * @param left the sum still missing in the group
+	 * @param empty the empty squares of the group, the square included
+	 * @return the values as a mask, 0 if the sum can not be reached
+	 */
+	int sumRange(int left, int empty) {
+		int lo = Math.max(1, left - maxSum(empty - 1));
+		int hi = Math.min(size, left - minSum(empty - 1));
+		return (lo > hi) ? 0 : ((2 << hi) - 1) & -(1 << lo);
+	}
+
+	/**
+	 * reachable
+	 * @param left the sum still missing in a group
+	 * @param empty the empty squares of the group
+	 * @return boolean true if that many different values can have that sum
+	 */
+	boolean reachable(int left, int empty) {
+		return left >= minSum(empty) && left <= maxSum(empty);
+	}
+
+	/**
+	 * allows
+	 * checks the groups of a square, the rows, columns and blocks are
+	 * left to the caller
+	 * @param board the board row by row, 0 for empty squares
+	 * @param cell the square index
+	 * @param val the value to put in the square
+	 * @return boolean false if a group of the square already has the
+	 * value or its sum can no longer be reached
+	 */
+	public boolean allows(int[] board, int cell, int val) {
+		for (int k = cellGroupStart[cell]; k < cellGroupStart[cell + 1]; k++) {
+			int g = cellGroups[k];
+			int left = groupSum[g] - val, empty = 0;
+			for (int m = groupStart[g]; m < groupStart[g + 1]; m++) {
+				int i = groupCells[m];
+				if (i == cell) continue;
+				if (board[i] == val) return false;
+				if (board[i] == 0) empty++;
+				left -= board[i];
+			}
+			if (groupSum[g] > 0 && !reachable(left, empty))
+				return false;
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		String s = size + "x" + size;
+		if (!regular) s += " jigsaw";
+		if (unitCount > 3*size) s += " +" + (unitCount - 3*size) + " units";
+		if (groupCount > unitCount - 3*size) s += " +" + (groupCount - unitCount + 3*size) + " groups";
+		return s;
+	}
+
+	/**
+	 * Class Builder
+	 * collects the constraints of a variant on top of the rows and
+	 * columns of a size. Rows, columns and blocks are always there, the
+	 * blocks can be replaced by jigsaw regions.
+	 */
+	public static final class Builder {
+
+		private final int box;
+		private final int size;
+		private int[] regions;
+		private final List<int[]> houses = new ArrayList<>();
+		private final List<int[]> others = new ArrayList<>();
+		private final List<Integer> otherSums = new ArrayList<>();
+		// filled by build, the houses first
+		private List<int[]> groups;
+		private List<Integer> sums;
+
+		private Builder(int box) {
+			if (box < MIN_BOX || box > MAX_BOX)
+				throw new IllegalArgumentException("unsupported box size " + box);
+			this.box = box;
+			size = box*box;
+		}
+
+		/**
+		 * getSize
+		 * @return N, the number of rows, columns and values
+		 */
+		public int getSize() {
+			return size;
+		}
+
+		/**
+		 * with
+		 * @param variant the constraints to add
+		 * @return this builder
+		 */
+		public Builder with(SudokuVariant variant) {
+			variant.addTo(this);
+			return this;
+		}
+
+		/**
+		 * regions
+		 * replaces the blocks by jigsaw regions
+		 * @param region the region of each square, 0 to N-1, N squares
+		 * in every region
+		 * @return this builder
+		 * @throws IllegalArgumentException if the regions do not split
+		 * the board in N regions of N squares
+		 */
+		public Builder regions(int[] region) {
+			if (region.length != size*size)
+				throw new IllegalArgumentException("need " + size*size + " regions");
+			int[] count = new int[size];
+			for (int r : region) {
+				if (r < 0 || r >= size || ++count[r] > size)
+					throw new IllegalArgumentException("regions must have " + size + " squares");
+			}
+			regions = region.clone();
+			return this;
+		}
+
+		/**
+		 * unit
+		 * adds a unit that holds every value once, like a diagonal
+		 * @param squares the N squares of the unit
+		 * @return this builder
+		 * @throws IllegalArgumentException if there are not N different squares
+		 */
+		public Builder unit(int... squares) {
+			if (squares.length != size)
+				throw new IllegalArgumentException("a unit needs " + size + " squares");
+			houses.add(check(squares));
+			return this;
+		}
+
+		/**
+		 * distinct
+		 * adds squares that may not repeat a value, but need not hold
+		 * every value
+		 * @param squares at most N squares
+		 * @return this builder
+		 * @throws IllegalArgumentException if the squares are not different
+		 */
+		public Builder distinct(int... squares) {
+			return cage(0, squares);
+		}
+
+		/**
+		 * cage
+		 * adds a killer cage: squares that may not repeat a value and
+		 * whose values add up to a sum
+		 * @param sum the sum of the cage, 0 for none
+		 * @param squares at most N squares
+		 * @return this builder
+		 * @throws IllegalArgumentException if the squares are not different
+		 * or no different values have that sum
+		 */
+		public Builder cage(int sum, int... squares) {
+			if (squares.length == 0 || squares.length > size)
+				throw new IllegalArgumentException("a cage needs 1 to " + size + " squares");
+			int n = squares.length;
+			if (sum != 0 && (sum < minSum(n) || sum > n*(2*size - n + 1)/2))
+				throw new IllegalArgumentException("no " + n + " different values add up to " + sum);
+			others.add(check(squares));
+			otherSums.add(sum);
+			return this;
+		}
+
+		private int[] check(int[] squares) {
+			boolean[] seen = new boolean[size*size];
+			for (int i : squares) {
+				if (i < 0 || i >= size*size || seen[i])
+					throw new IllegalArgumentException("bad square " + i);
+				seen[i] = true;
+			}
+			return squares.clone();
+		}
+
+		/**
+		 * build
+		 * @return the geometry with all its tables, the shared one if
+		 * nothing was added
+		 */
+		public SudokuGeometry build() {
+			if (regions == null && houses.isEmpty() && others.isEmpty() && SHAPES[box] != null)
+				return SHAPES[box];
+			groups = new ArrayList<>(houses);
+			groups.addAll(others);
+			sums = new ArrayList<>();
+			for (int h = 0; h < houses.size(); h++) sums.add(0);
+			sums.addAll(otherSums);
+			return new SudokuGeometry(this);
+		}
+	}
+}
@@ -4,20 +4,35 @@ import javax.swing.*;
 public class SudokuMain extends JFrame {
 
   public SudokuMain() {
+    this(SudokuGeometry.STANDARD);
+  }
+
+  /**
+   * constructor for a window with a board of any size
+   * @param geometry the size of the board
+   */
+  public SudokuMain(SudokuGeometry geometry) {
 	JMenuBar menuBar = new JMenuBar();
-    SudokuModel model       = new MySudokuModel();
+    SudokuModel model       = new MySudokuModel(geometry);
     MySudokuController ctrl = new MySudokuController(model, menuBar);
     MySudokuView view       = new MySudokuView(model, ctrl);
     add(menuBar, BorderLayout.NORTH);
     add(view, BorderLayout.CENTER);
     add(ctrl, BorderLayout.SOUTH); 
-    setSize(420,420);
+    int side = Math.max(420, 40*geometry.size + 60);
+    setSize(side,side);
     setLocationRelativeTo(null); // centrera
     setVisible(true);
     setDefaultCloseOperation(EXIT_ON_CLOSE);
   }
 
+  /**
+   * main
+   * @param arg optionally the width of a block, 2 for 4x4 up to 5 for
+   * 25x25 boards, 3 if none is given
+   */
   public static void main(String[] arg) {
-    new SudokuMain();
+    new SudokuMain((arg.length > 0) ? SudokuGeometry.of(Integer.parseInt(arg[0]))
+                                    : SudokuGeometry.STANDARD);
   } 
-}
\ No newline at end of file
+}
@@ -3,10 +3,13 @@ public interface SudokuModel extends Model {
 	  void clear();
 	  void setBoard(int row, int col, int val); 
 	  void setBoard(String input); 
+	  SudokuGeometry getGeometry();
 	  int  getBoard(int row, int col);
 	  String getBoard();
 	  boolean isLegal(int row, int col, int val);
 	  boolean solve(); 
+	  SolveResult solve(SolveBudget budget);
 	  boolean isSolvable();
 	  boolean isUnique();
+	  SolveResult isUnique(SolveBudget budget);
 }
@@ -0,0 +1,595 @@
+import java.util.Arrays;
+
+/**
+ * Class SudokuSolver
+ * backtracking solver for a sudoku of any size from 4x4 to 25x25, see
+ * SudokuGeometry. The board is kept as a flat array of squares (81 for
+ * a 9x9 board) together with row, column and block masks, and every empty
+ * square knows how many candidates it has left. The counts are updated
+ * incrementally when a value is placed or removed, and the empty squares
+ * are kept in one list per count so the most constrained square can be
+ * picked without looking at the whole board. Nothing is allocated while
+ * searching.
+ *
+ * Variants get the same search. Their extra units and cages are groups
+ * of the geometry with a mask each, and a cage with a sum also limits
+ * the candidates of its squares to the values that leave a reachable
+ * sum for the rest of the cage.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class SudokuSolver implements SudokuEngine {
+
+	private static final int NONE = -1;
+	private static final int DEAD_END = -2;
+
+	private final SudokuGeometry geometry;
+	private final int size;
+	private final int cellCount;
+	private final int all; // bit v set for v = 1..size
+	private final int[] rowOf;
+	private final int[] colOf;
+	private final int[] blockOf;
+	private final int[] peers;
+	private final int[] peerStart;
+	// the groups of a variant, see SudokuGeometry
+	private final boolean grouped;
+	private final boolean sums;
+	private final int[] cellGroups;
+	private final int[] cellGroupStart;
+	private final int[] groupMask;
+	private final int[] groupLeft;	// the sum still missing
+	private final int[] groupEmpty;
+
+	private final int[] grid;
+	private final int[] rowMask;
+	private final int[] colMask;
+	private final int[] blockMask;
+
+	// empty squares grouped by their number of candidates (0..size)
+	private final int[] count;
+	private final int[] next;
+	private final int[] prev;
+	private final int[] head;
+
+	// a value that is not allowed in one square, see loadExcluding
+	private final int[] banned;
+	private int bannedCell = NONE;
+
+	private final Propagator propagator;
+	private boolean propagation = true;
+	// boards larger than 9x9 also branch on hidden singles, see hiddenSingle
+	private final boolean unitSingles;
+	private boolean contradiction;
+
+	private final int[] solution;
+	private int solutions;
+	private int limit;
+	private long nodes;
+	// the budget of the current search, looked at when nodes reaches nextCheck
+	private SolveBudget budget;
+	private long nodeLimit;
+	private long nextCheck = Long.MAX_VALUE;
+	private boolean exhausted;
+	// filled while a listener is set, otherwise null
+	private SolverListener listener;
+	private SolverStats stats;
+
+	public SudokuSolver() {
+		this(SudokuGeometry.STANDARD);
+	}
+
+	/**
+	 * constructor for a SudokuSolver of any size
+	 * @param geometry the size of the boards
+	 */
+	public SudokuSolver(SudokuGeometry geometry) {
+		this.geometry = geometry;
+		size = geometry.size;
+		cellCount = geometry.cells;
+		all = geometry.all;
+		rowOf = geometry.row;
+		colOf = geometry.col;
+		blockOf = geometry.block;
+		peers = geometry.peers;
+		peerStart = geometry.peerStart;
+		grouped = geometry.groupCount > 0;
+		sums = geometry.hasSums();
+		cellGroups = geometry.cellGroups;
+		cellGroupStart = geometry.cellGroupStart;
+		groupMask = new int[geometry.groupCount];
+		groupLeft = new int[geometry.groupCount];
+		groupEmpty = new int[geometry.groupCount];
+		grid = new int[cellCount];
+		rowMask = new int[size];
+		colMask = new int[size];
+		blockMask = new int[size];
+		count = new int[cellCount];
+		next = new int[cellCount];
+		prev = new int[cellCount];
+		head = new int[size+1];
+		banned = new int[cellCount];
+		solution = new int[cellCount];
+		propagator = new Propagator(true, geometry);
+		unitSingles = size > 9;
+	}
+
+	/**
+	 * load
+	 * loads a board into the solver. Empty squares are 0.
+	 * @param board an N by N matrix
+	 * @return boolean false if the board breaks the sudoku rules
+	 */
+	public boolean load(int[][] board) {
+		for (int i = 0; i < cellCount; i++) {
+			grid[i] = board[rowOf[i]][colOf[i]];
+		}
+		ban(NONE, 0);
+		return init();
+	}
+
+	/**
+	 * load
+	 * loads a board stored row by row in a flat array. Empty squares are 0.
+	 * @param cells array with N*N values
+	 * @return boolean false if the board breaks the sudoku rules
+	 */
+	public boolean load(int[] cells) {
+		System.arraycopy(cells, 0, grid, 0, cellCount);
+		ban(NONE, 0);
+		return init();
+	}
+
+	/**
+	 * loadExcluding
+	 * loads a board where one empty square may not take a given value.
+	 * When a clue is removed from a puzzle with a unique solution, the
+	 * puzzle is still unique exactly when there is no solution with
+	 * another value in that square, so searching this board for a single
+	 * solution answers the uniqueness question faster than counting two.
+	 * @param cells array with N*N values, 0 for empty
+	 * @param cell the index of an empty square, row*N+col
+	 * @param val the value not allowed in that square
+	 * @return boolean false if the board breaks the sudoku rules
+	 */
+	public boolean loadExcluding(int[] cells, int cell, int val) {
+		System.arraycopy(cells, 0, grid, 0, cellCount);
+		ban(cell, val);
+		return init();
+	}
+
+	private void ban(int cell, int val) {
+		if (bannedCell != NONE) banned[bannedCell] = 0;
+		bannedCell = cell;
+		if (cell != NONE) banned[cell] = 1 << val;
+	}
+
+	/**
+	 * setPropagation
+	 * turns the Propagator pass that runs on every loaded board
+	 * before the search on or off. It is on by default.
+	 * @param on true if the pass should be used
+	 */
+	public void setPropagation(boolean on) {
+		propagation = on;
+	}
+
+	/**
+	 * getPropagator
+	 * @return the Propagator with the report of the last loaded board
+	 */
+	public Propagator getPropagator() {
+		return propagator;
+	}
+
+	/**
+	 * init
+	 * checks the grid, fills the squares the Propagator can deduce and
+	 * builds the masks and the candidate lists
+	 * @return boolean false if a value occurs twice in a row, column,
+	 * block or group, or the sum of a group can not be reached
+	 */
+	private boolean init() {
+		long t0 = (stats != null) ? System.nanoTime() : 0;
+		solutions = 0;
+		nodes = 0;
+		contradiction = false;
+		if (stats != null) stats.reset();
+		if (!buildMasks()) return false;
+		if (propagation) {
+			contradiction = !propagator.propagate(grid)
+					|| (bannedCell != NONE && (1 << grid[bannedCell]) == banned[bannedCell]);
+			// the Propagator does not know the sums of the groups
+			if (!buildMasks()) contradiction = true;
+			if (stats != null) stats.propagated = propagator.getFilled();
+		}
+		Arrays.fill(head, NONE);
+		for (int i = 0; i < cellCount; i++) {
+			if (grid[i] == 0)
+				insert(i, Integer.bitCount(candidates(i)));
+		}
+		if (stats != null) stats.loadNanos = System.nanoTime() - t0;
+		return true;
+	}
+
+	private boolean buildMasks() {
+		Arrays.fill(rowMask, 0);
+		Arrays.fill(colMask, 0);
+		Arrays.fill(blockMask, 0);
+		if (grouped) {
+			Arrays.fill(groupMask, 0);
+			for (int g = 0; g < groupMask.length; g++) {
+				groupLeft[g] = geometry.groupSum[g];
+				groupEmpty[g] = geometry.groupStart[g + 1] - geometry.groupStart[g];
+			}
+		}
+		for (int i = 0; i < cellCount; i++) {
+			int val = grid[i];
+			if (val == 0) continue;
+			int bit = 1 << val;
+			if (val < 0 || val > size || (used(i) & bit) != 0)
+				return false;
+			rowMask[rowOf[i]] |= bit;
+			colMask[colOf[i]] |= bit;
+			blockMask[blockOf[i]] |= bit;
+			if (grouped) enterGroups(i, bit);
+		}
+		if (sums) {
+			for (int g = 0; g < groupMask.length; g++) {
+				if (geometry.groupSum[g] != 0 && !geometry.reachable(groupLeft[g], groupEmpty[g]))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * countSolutions
+	 * searches the loaded board until all solutions are found or
+	 * the limit is reached. The first solution is kept.
+	 * @param limit the search stops when this many solutions are found
+	 * @return the number of solutions found, at most limit
+	 */
+	public int countSolutions(int limit) {
+		return countSolutions(limit, null);
+	}
+
+	/**
+	 * countSolutions
+	 * like countSolutions(int) but stops early if the budget runs out,
+	 * see isExhausted. The budget is looked at every
+	 * SolveBudget.CHECK_INTERVAL nodes.
+	 * @param limit the search stops when this many solutions are found
+	 * @param budget the budget, or null for none
+	 * @return the number of solutions found before the search stopped
+	 */
+	public int countSolutions(int limit, SolveBudget budget) {
+		this.limit = limit;
+		this.budget = budget;
+		solutions = 0;
+		exhausted = false;
+		if (budget != null) {
+			nodeLimit = budget.nodeLimit(nodes);
+			nextCheck = nodes;
+		} else {
+			nextCheck = Long.MAX_VALUE;
+		}
+		long t0 = (stats != null) ? System.nanoTime() : 0;
+		long start = nodes;
+		// a second search of the same board reports only itself
+		if (stats != null && stats.calls > 0) stats.reset();
+		if (limit > 0 && !contradiction)
+			search(0);
+		if (stats != null) record(t0, start);
+		return solutions;
+	}
+
+	/**
+	 * setSolverListener
+	 * @param listener gets the stats after every search, null to stop
+	 * recording them
+	 */
+	public void setSolverListener(SolverListener listener) {
+		this.listener = listener;
+		stats = (listener != null) ? new SolverStats() : null;
+	}
+
+	/**
+	 * getStats
+	 * @return the stats of the last loaded board, or null if there is
+	 * no listener
+	 */
+	public SolverStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * isExhausted
+	 * @return boolean true if the last search stopped because its
+	 * budget ran out
+	 */
+	public boolean isExhausted() {
+		return exhausted;
+	}
+
+	/**
+	 * outOfBudget
+	 * looks at the budget of the search. When it has run out the limit
+	 * is lowered to the solutions found, which makes the search unwind.
+	 * @return boolean true if the search has to stop
+	 */
+	private boolean outOfBudget() {
+		if (nodes >= nodeLimit || budget.isOver()) {
+			exhausted = true;
+			limit = solutions;
+			nextCheck = Long.MAX_VALUE;
+			return true;
+		}
+		nextCheck = Math.min(nodeLimit, nodes + SolveBudget.CHECK_INTERVAL);
+		return false;
+	}
+
+	/**
+	 * getSolution
+	 * @return a copy of the first solution found as an N by N matrix,
+	 * or null if no solution was found
+	 */
+	public int[][] getSolution() {
+		if (solutions == 0) return null;
+		int[][] res = new int[size][size];
+		for (int i = 0; i < cellCount; i++) {
+			res[rowOf[i]][colOf[i]] = solution[i];
+		}
+		return res;
+	}
+
+	/**
+	 * getNodes
+	 * @return the number of search nodes visited by the last search
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	public SudokuGeometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * record
+	 * adds a finished search to the stats and tells the listener
+	 */
+	private void record(long t0, long start) {
+		stats.searchNanos += System.nanoTime() - t0;
+		stats.nodes += nodes - start;
+		stats.solutions += solutions;
+		stats.calls++;
+		listener.searched(stats);
+	}
+
+	/**
+	 * search
+	 * fills the most constrained square with each of its candidates
+	 * in turn and recurses.
+	 * @param depth the number of values placed by the search so far
+	 */
+	private void search(int depth) {
+		nodes++;
+		if (nodes >= nextCheck && outOfBudget()) return;
+		int cell = pickCell();
+		if (cell == NONE) {
+			if (++solutions == 1)
+				System.arraycopy(grid, 0, solution, 0, cellCount);
+			return;
+		}
+		int cands = candidates(cell);
+		if (unitSingles && count[cell] > 1) {
+			int forced = hiddenSingle();
+			if (forced == DEAD_END) {
+				if (stats != null) stats.node(depth, 0);
+				return;
+			}
+			if (forced != NONE) {
+				cell = forced >>> 6;
+				cands = 1 << (forced & 63);
+			}
+		}
+		if (stats != null) stats.node(depth, Integer.bitCount(cands));
+		while (cands != 0) {
+			int bit = cands & -cands;
+			cands ^= bit;
+			assign(cell, bit);
+			search(depth + 1);
+			unassign(cell, bit);
+			if (solutions >= limit) return;
+		}
+	}
+
+	/**
+	 * hiddenSingle
+	 * looks through the units for a value that has no square left, or
+	 * only one
+	 * @return DEAD_END if a value has no square left in a unit, the
+	 * square and the value of a value with one square left packed as
+	 * cell << 6 | value, or NONE
+	 */
+	private int hiddenSingle() {
+		int[] units = geometry.units;
+		for (int u = 0; u < geometry.unitCount; u++) {
+			int once = 0, twice = 0, placed = 0;
+			for (int k = u*size, end = k + size; k < end; k++) {
+				int i = units[k];
+				if (grid[i] == 0) {
+					int c = candidates(i);
+					twice |= once & c;
+					once |= c;
+				} else {
+					placed |= 1 << grid[i];
+				}
+			}
+			if ((once | placed) != all) return DEAD_END;
+			int single = once & ~twice;
+			if (single != 0) {
+				int bit = single & -single;
+				for (int k = u*size; ; k++) {
+					int i = units[k];
+					if (grid[i] == 0 && (candidates(i) & bit) != 0)
+						return i << 6 | Integer.numberOfTrailingZeros(bit);
+				}
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * pickCell
+	 * @return the empty square with the fewest candidates, or NONE
+	 * if the board is full. A square without candidates is returned
+	 * first so the search backtracks right away.
+	 */
+	private int pickCell() {
+		for (int k = 0; k <= size; k++) {
+			if (head[k] != NONE) return head[k];
+		}
+		return NONE;
+	}
+
+	private int used(int cell) {
+		int used = rowMask[rowOf[cell]] | colMask[colOf[cell]] | blockMask[blockOf[cell]];
+		if (grouped) {
+			for (int k = cellGroupStart[cell], end = cellGroupStart[cell + 1]; k < end; k++) {
+				used |= groupMask[cellGroups[k]];
+			}
+		}
+		return used;
+	}
+
+	private int candidates(int cell) {
+		int c = all & ~(used(cell) | banned[cell]);
+		if (sums) {
+			for (int k = cellGroupStart[cell], end = cellGroupStart[cell + 1]; k < end; k++) {
+				int g = cellGroups[k];
+				if (geometry.groupSum[g] != 0)
+					c &= geometry.sumRange(groupLeft[g], groupEmpty[g]);
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * enterGroups
+	 * adds a placed value to the groups of its square
+	 * @param cell the square index
+	 * @param bit the value as a mask bit
+	 */
+	private void enterGroups(int cell, int bit) {
+		int val = Integer.numberOfTrailingZeros(bit);
+		for (int k = cellGroupStart[cell], end = cellGroupStart[cell + 1]; k < end; k++) {
+			int g = cellGroups[k];
+			groupMask[g] |= bit;
+			groupLeft[g] -= val;
+			groupEmpty[g]--;
+		}
+	}
+
+	/**
+	 * leaveGroups
+	 * reverts enterGroups
+	 * @param cell the square index
+	 * @param bit the value as a mask bit
+	 */
+	private void leaveGroups(int cell, int bit) {
+		int val = Integer.numberOfTrailingZeros(bit);
+		for (int k = cellGroupStart[cell], end = cellGroupStart[cell + 1]; k < end; k++) {
+			int g = cellGroups[k];
+			groupMask[g] &= ~bit;
+			groupLeft[g] += val;
+			groupEmpty[g]++;
+		}
+	}
+
+	/**
+	 * recount
+	 * counts the candidates of the empty squares of the groups with a
+	 * sum again, since a changed sum can remove or give back any value
+	 * @param cell the square index whose groups are recounted
+	 */
+	private void recount(int cell) {
+		int[] groupCells = geometry.groupCells;
+		for (int k = cellGroupStart[cell], end = cellGroupStart[cell + 1]; k < end; k++) {
+			int g = cellGroups[k];
+			if (geometry.groupSum[g] == 0) continue;
+			for (int m = geometry.groupStart[g]; m < geometry.groupStart[g + 1]; m++) {
+				int p = groupCells[m];
+				if (grid[p] == 0 && p != cell) {
+					remove(p);
+					insert(p, Integer.bitCount(candidates(p)));
+				}
+			}
+		}
+	}
+
+	/**
+	 * assign
+	 * places a value and removes it from the candidates of the
+	 * empty peers
+	 * @param cell the square index
+	 * @param bit the value as a mask bit
+	 */
+	private void assign(int cell, int bit) {
+		remove(cell);
+		grid[cell] = Integer.numberOfTrailingZeros(bit);
+		for (int k = peerStart[cell], end = peerStart[cell + 1]; k < end; k++) {
+			int p = peers[k];
+			if (grid[p] == 0 && (candidates(p) & bit) != 0) {
+				remove(p);
+				insert(p, count[p]-1);
+			}
+		}
+		rowMask[rowOf[cell]] |= bit;
+		colMask[colOf[cell]] |= bit;
+		blockMask[blockOf[cell]] |= bit;
+		if (grouped) {
+			enterGroups(cell, bit);
+			if (sums) recount(cell);
+		}
+	}
+
+	/**
+	 * unassign
+	 * reverts assign
+	 * @param cell the square index
+	 * @param bit the value as a mask bit
+	 */
+	private void unassign(int cell, int bit) {
+		rowMask[rowOf[cell]] &= ~bit;
+		colMask[colOf[cell]] &= ~bit;
+		blockMask[blockOf[cell]] &= ~bit;
+		if (grouped) leaveGroups(cell, bit);
+		grid[cell] = 0;
+		for (int k = peerStart[cell], end = peerStart[cell + 1]; k < end; k++) {
+			int p = peers[k];
+			if (grid[p] == 0 && (candidates(p) & bit) != 0) {
+				remove(p);
+				insert(p, count[p]+1);
+			}
+		}
+		if (sums) recount(cell);
+		insert(cell, Integer.bitCount(candidates(cell)));
+	}
+
+	private void insert(int cell, int k) {
+		count[cell] = k;
+		prev[cell] = NONE;
+		next[cell] = head[k];
+		if (head[k] != NONE) prev[head[k]] = cell;
+		head[k] = cell;
+	}
+
+	private void remove(int cell) {
+		if (prev[cell] == NONE) head[count[cell]] = next[cell];
+		else next[prev[cell]] = next[cell];
+		if (next[cell] != NONE) prev[next[cell]] = prev[cell];
+	}
+}
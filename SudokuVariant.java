@@ -0,0 +1,78 @@
+/**
+ * Interface SudokuVariant
+ * a set of extra constraints that adds itself to a
+ * SudokuGeometry.Builder. The common variants are made by the static
+ * methods, others can add any units, regions and cages of their own.
+ *
+ * usage: SudokuGeometry.builder(3).with(SudokuVariant.diagonals()).build()
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public interface SudokuVariant {
+
+	/**
+	 * addTo
+	 * adds the constraints of the variant
+	 * @param builder the builder of the geometry
+	 */
+	void addTo(SudokuGeometry.Builder builder);
+
+	/**
+	 * diagonals
+	 * @return X-sudoku, where both long diagonals hold every value once
+	 */
+	static SudokuVariant diagonals() {
+		return b -> {
+			int size = b.getSize();
+			int[] main = new int[size], anti = new int[size];
+			for (int k = 0; k < size; k++) {
+				main[k] = k*size + k;
+				anti[k] = k*size + size - 1 - k;
+			}
+			b.unit(main).unit(anti);
+		};
+	}
+
+	/**
+	 * jigsaw
+	 * @param region the region of each square row by row, 0 to N-1,
+	 * that takes the place of the blocks
+	 * @return a jigsaw sudoku
+	 */
+	static SudokuVariant jigsaw(int[] region) {
+		int[] copy = region.clone();
+		return b -> b.regions(copy);
+	}
+
+	/**
+	 * killer
+	 * @param cage the cage of each square row by row, -1 for a square
+	 * outside every cage
+	 * @param sum the sum of each cage
+	 * @return a killer sudoku, where the squares of a cage may not
+	 * repeat a value and add up to the sum of the cage
+	 */
+	static SudokuVariant killer(int[] cage, int[] sum) {
+		int[] copy = cage.clone();
+		int[] sums = sum.clone();
+		return b -> {
+			if (copy.length != b.getSize()*b.getSize())
+				throw new IllegalArgumentException("need a cage for every square");
+			int[] count = new int[sums.length];
+			for (int c : copy) {
+				if (c >= sums.length)
+					throw new IllegalArgumentException("no sum for cage " + c);
+				if (c >= 0) count[c]++;
+			}
+			for (int c = 0; c < sums.length; c++) {
+				int[] squares = new int[count[c]];
+				int n = 0;
+				for (int i = 0; i < copy.length; i++) {
+					if (copy[i] == c) squares[n++] = i;
+				}
+				b.cage(sums[c], squares);
+			}
+		};
+	}
+}
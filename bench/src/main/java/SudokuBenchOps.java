@@ -0,0 +1,64 @@
+import sudoku.bench.SudokuOps;
+
+/**
+ * Class SudokuBenchOps
+ * gives the benchmarks in sudoku.bench access to MySudokuModel,
+ * see SudokuOps
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public class SudokuBenchOps implements SudokuOps {
+
+	@Override
+	public Object load(String board) {
+		MySudokuModel m = new MySudokuModel();
+		return setBoard(m, board) ? m : null;
+	}
+
+	@Override
+	public Object copy(Object model) {
+		return new MySudokuModel((MySudokuModel) model);
+	}
+
+	@Override
+	public boolean solve(Object model) {
+		return ((MySudokuModel) model).solve();
+	}
+
+	@Override
+	public boolean isUnique(Object model) {
+		return ((MySudokuModel) model).isUnique();
+	}
+
+	@Override
+	public int uniqueSolutions(Object model) {
+		return ((MySudokuModel) model).uniqueSolutions();
+	}
+
+	@Override
+	public void generate(Object model, boolean hard) {
+		((MySudokuModel) model).generate(hard ? MySudokuModel.Difficulty.HARD
+												: MySudokuModel.Difficulty.EASY);
+	}
+
+	@Override
+	public boolean setBoard(Object model, String board) {
+		try {
+			((MySudokuModel) model).setBoard(board);
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public String getBoard(Object model) {
+		return ((MySudokuModel) model).getBoard();
+	}
+
+	@Override
+	public boolean parse(String board, int[] cells) {
+		return BoardFormat.parse(board, cells);
+	}
+}
@@ -0,0 +1,56 @@
+package sudoku.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Class Corpus
+ * reads the puzzles of one corpus (easy, hard, extra or illegal) from
+ * the SudokuProblem directory. The directory is taken from the system
+ * property sudoku.problems and defaults to SudokuProblem in the
+ * working directory.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public final class Corpus {
+
+	public static final String EMPTY = ".........\n.........\n.........\n"
+			+ ".........\n.........\n.........\n.........\n.........\n.........\n";
+
+	private Corpus() {}
+
+	/**
+	 * load
+	 * @param name the file name prefix, for example "hard"
+	 * @return the text of every file name + number + ".sud", sorted by name
+	 */
+	public static String[] load(String name) {
+		Path dir = Paths.get(System.getProperty("sudoku.problems", "SudokuProblem"));
+		try (Stream<Path> files = Files.list(dir)) {
+			List<String> boards = files
+					.filter(p -> p.getFileName().toString().matches(name + "\\d+\\.sud"))
+					.sorted()
+					.map(Corpus::read)
+					.collect(Collectors.toList());
+			if (boards.isEmpty())
+				throw new IllegalStateException("no " + name + " puzzles in " + dir.toAbsolutePath());
+			return boards.toArray(new String[0]);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String read(Path p) {
+		try {
+			return new String(Files.readAllBytes(p), StandardCharsets.US_ASCII);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
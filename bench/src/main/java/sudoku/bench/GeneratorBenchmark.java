@@ -0,0 +1,39 @@
+package sudoku.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Class GeneratorBenchmark
+ * generate(EASY) and generate(HARD), scored in puzzles per second
+ *
+ * @author Jonas Lecerof
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeneratorBenchmark {
+
+	@Param({"EASY", "HARD"})
+	public String difficulty;
+
+	private SudokuOps ops;
+	private Object model;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		ops = SudokuOps.create();
+		model = ops.load(Corpus.EMPTY);
+	}
+
+	@Benchmark
+	public String generate() {
+		ops.generate(model, "HARD".equals(difficulty));
+		return ops.getBoard(model);
+	}
+}
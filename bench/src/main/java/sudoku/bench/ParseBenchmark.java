@@ -0,0 +1,62 @@
+package sudoku.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Class ParseBenchmark
+ * setBoard(String) and getBoard() on the boards of a corpus, one
+ * board per operation. Illegal boards measure the failing path of
+ * setBoard. parse measures BoardFormat alone, without the model.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+	@Param({"easy", "hard", "extra", "illegal"})
+	public String corpus;
+
+	private SudokuOps ops;
+	private String[] boards;
+	private Object model;
+	private final int[] cells = new int[81];
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		ops = SudokuOps.create();
+		boards = Corpus.load(corpus);
+		model = ops.load(boards[0]);
+		if (model == null)
+			model = ops.load(Corpus.EMPTY);
+	}
+
+	private String nextBoard() {
+		String b = boards[next];
+		next = (next + 1 == boards.length) ? 0 : next + 1;
+		return b;
+	}
+
+	@Benchmark
+	public boolean setBoard() {
+		return ops.setBoard(model, nextBoard());
+	}
+
+	@Benchmark
+	public boolean parse() {
+		return ops.parse(nextBoard(), cells);
+	}
+
+	@Benchmark
+	public String getBoard() {
+		return ops.getBoard(model);
+	}
+}
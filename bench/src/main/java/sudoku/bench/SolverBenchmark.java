@@ -0,0 +1,74 @@
+package sudoku.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Class SolverBenchmark
+ * solve, isUnique and uniqueSolutions on every puzzle of a corpus that
+ * can be loaded. One operation is one puzzle, taken in turn, so the
+ * score is puzzles per second. Run with -prof gc for bytes per puzzle.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+
+	@Param({"easy", "hard", "extra", "illegal"})
+	public String corpus;
+
+	private SudokuOps ops;
+	private Object[] models;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		ops = SudokuOps.create();
+		List<Object> loaded = new ArrayList<Object>();
+		for (String board : Corpus.load(corpus)) {
+			Object m = ops.load(board);
+			if (m != null) loaded.add(m);
+		}
+		models = loaded.toArray();
+	}
+
+	private Object nextModel() {
+		Object m = models[next];
+		next = (next + 1 == models.length) ? 0 : next + 1;
+		return m;
+	}
+
+	/**
+	 * one search for a solution of the board. solve changes the board, so
+	 * a copy of the loaded model is solved.
+	 */
+	@Benchmark
+	public boolean solve() {
+		return ops.solve(ops.copy(nextModel()));
+	}
+
+	/** the cost of the copy made in solve, to subtract from it */
+	@Benchmark
+	public Object copy() {
+		return ops.copy(nextModel());
+	}
+
+	@Benchmark
+	public boolean isUnique() {
+		return ops.isUnique(nextModel());
+	}
+
+	@Benchmark
+	public int uniqueSolutions() {
+		return ops.uniqueSolutions(nextModel());
+	}
+}
@@ -0,0 +1,36 @@
+package sudoku.bench;
+
+/**
+ * Interface SudokuOps
+ * the model operations that are benchmarked. JMH does not allow
+ * benchmarks in the default package and classes in a package can not
+ * refer to the default package, so the model is reached through this
+ * interface. It is implemented by SudokuBenchOps in the default package
+ * and loaded once per trial, which keeps the calls monomorphic.
+ *
+ * @author Jonas Lecerof
+ *
+ */
+public interface SudokuOps {
+	/** @return a new model with the board set, or null if setBoard throws */
+	Object load(String board);
+	Object copy(Object model);
+	/** @return true if a solution was found, by one search of the board */
+	boolean solve(Object model);
+	boolean isUnique(Object model);
+	int uniqueSolutions(Object model);
+	void generate(Object model, boolean hard);
+	/** @return false if setBoard threw an IllegalArgumentException */
+	boolean setBoard(Object model, String board);
+	String getBoard(Object model);
+	/** @return false if the text is not a board, see BoardFormat */
+	boolean parse(String board, int[] cells);
+
+	static SudokuOps create() {
+		try {
+			return (SudokuOps) Class.forName("SudokuBenchOps").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("SudokuBenchOps is missing", e);
+		}
+	}
+}
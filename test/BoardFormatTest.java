@@ -0,0 +1,165 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class BoardFormatTest
+ * tests the text forms BoardFormat reads and writes, and the edges of
+ * them: line ends, missing lines, short lines and larger boards
+ * @author Jonas Lecerof
+ *
+ */
+public class BoardFormatTest {
+
+	private static final String PUZZLE =
+			"530070000\n"
+			+ "600195000\n"
+			+ "098000060\n"
+			+ "800060003\n"
+			+ "400803001\n"
+			+ "700020006\n"
+			+ "060000280\n"
+			+ "000419005\n"
+			+ "000080079\n";
+
+	/**
+	 * expected
+	 * @return the values of PUZZLE, read without BoardFormat
+	 */
+	private static int[] expected() {
+		int[] cells = new int[81];
+		String digits = PUZZLE.replace("\n", "");
+		for (int i = 0; i < 81; i++) cells[i] = digits.charAt(i) - '0';
+		return cells;
+	}
+
+	/**
+	 * parsesToPuzzle
+	 * checks the text with every overload of parse
+	 */
+	private static void parsesToPuzzle(String text) {
+		int[] want = expected();
+		int[] cells = new int[81];
+		assertTrue(BoardFormat.parse(text, cells), text);
+		assertArrayEquals(want, cells);
+		char[] chars = ("xx" + text + "yy").toCharArray();
+		assertTrue(BoardFormat.parse(chars, 2, text.length(), cells = new int[81]), text);
+		assertArrayEquals(want, cells);
+		byte[] bytes = ("xx" + text + "yy").getBytes(StandardCharsets.US_ASCII);
+		assertTrue(BoardFormat.parse(bytes, 2, text.length(), cells = new int[81]), text);
+		assertArrayEquals(want, cells);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes, 2, text.length());
+		assertTrue(BoardFormat.parse(buffer, cells = new int[81]), text);
+		assertArrayEquals(want, cells);
+		assertEquals(2, buffer.position());
+	}
+
+	private static boolean parses(String text) {
+		return BoardFormat.parse(text, new int[81]);
+	}
+
+	@Test
+	public void manyLines() {
+		parsesToPuzzle(PUZZLE);
+	}
+
+	@Test
+	public void withoutLastLineEnd() {
+		parsesToPuzzle(PUZZLE.substring(0, PUZZLE.length() - 1));
+	}
+
+	@Test
+	public void crLfLineEnds() {
+		parsesToPuzzle(PUZZLE.replace("\n", "\r\n"));
+		parsesToPuzzle(PUZZLE.replace("\n", "\r\n").substring(0, PUZZLE.length() + 7));
+	}
+
+	@Test
+	public void oneLine() {
+		String line = PUZZLE.replace("\n", "");
+		parsesToPuzzle(line);
+		parsesToPuzzle(line + "\n");
+		parsesToPuzzle(line + "\r\n");
+		parsesToPuzzle(line + " trailing text\nand more lines");
+	}
+
+	@Test
+	public void anyOtherCharacterIsEmpty() {
+		parsesToPuzzle(PUZZLE.replace('0', '.'));
+		parsesToPuzzle(PUZZLE.replace('0', ' ').replace("\n", "").replace(' ', '_'));
+	}
+
+	@Test
+	public void charactersAfterTheRowAreIgnored() {
+		StringBuilder sb = new StringBuilder();
+		for (String row : PUZZLE.split("\n")) sb.append(row).append("  # a comment 123456789\n");
+		parsesToPuzzle(sb.toString());
+	}
+
+	@Test
+	public void notABoard() {
+		assertFalse(parses(""));
+		assertFalse(parses("\n"));
+		assertFalse(parses(PUZZLE.substring(0, PUZZLE.length() - 11))); // 8 lines
+		assertFalse(parses(PUZZLE.substring(0, PUZZLE.length() - 2))); // last line short
+		assertFalse(parses(PUZZLE.replace("600195000", "60019500"))); // a short line
+		assertFalse(parses(PUZZLE.replace("\n", "").substring(1))); // 80 characters
+		assertFalse(parses("\n" + PUZZLE)); // an empty first line
+	}
+
+	@Test
+	public void valuesLargerThanTheBoardAreEmpty() {
+		int[] cells = new int[16];
+		assertTrue(BoardFormat.parse("1234\n5.9a\n3412\n21zZ\n", 4, cells));
+		assertArrayEquals(new int[] {1, 2, 3, 4, 0, 0, 0, 0, 3, 4, 1, 2, 2, 1, 0, 0}, cells);
+	}
+
+	@Test
+	public void largerBoardsRoundTrip() {
+		for (int size : new int[] {4, 9, 16, 25}) {
+			int[] cells = new int[size*size];
+			for (int i = 0; i < cells.length; i++) cells[i] = (i*7 + i/size)%(size + 1);
+			char[] text = new char[size*(size + 1)];
+			BoardFormat.format(cells, size, text, 0);
+			int[] back = new int[size*size];
+			assertTrue(BoardFormat.parse(new String(text), size, back), "size " + size);
+			assertArrayEquals(cells, back, "size " + size);
+			String lower = new String(text).toLowerCase();
+			assertTrue(BoardFormat.parse(lower, size, back = new int[size*size]), "size " + size);
+			assertArrayEquals(cells, back, "size " + size);
+		}
+	}
+
+	@Test
+	public void sixteenBySixteenSymbols() {
+		assertEquals('0', BoardFormat.symbol(0));
+		assertEquals('9', BoardFormat.symbol(9));
+		assertEquals('A', BoardFormat.symbol(10));
+		assertEquals('G', BoardFormat.symbol(16));
+		assertEquals(16, BoardFormat.value('G', 16));
+		assertEquals(16, BoardFormat.value('g', 16));
+		assertEquals(0, BoardFormat.value('H', 16));
+		assertEquals(0, BoardFormat.value('A', 9));
+		assertEquals(0, BoardFormat.value('0', 16));
+	}
+
+	@Test
+	public void formatLineRoundTrip() {
+		int[] cells = expected();
+		StringBuilder sb = new StringBuilder();
+		BoardFormat.formatLine(cells, sb);
+		byte[] bytes = new byte[81];
+		BoardFormat.formatLine(cells, bytes, 0);
+		assertEquals(sb.toString(), new String(bytes, StandardCharsets.US_ASCII));
+		parsesToPuzzle(sb.toString());
+		char[] text = new char[90];
+		BoardFormat.format(cells, text, 0);
+		assertEquals(PUZZLE, new String(text));
+	}
+}
@@ -0,0 +1,140 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Class CodecTest
+ * tests that boards come back unchanged from the nibble and givens
+ * forms of BoardCodec, from a PackedCorpus file and from the packed
+ * form of MySudokuModel
+ * @author Jonas Lecerof
+ *
+ */
+public class CodecTest {
+
+	private static final String PUZZLE =
+			"53..7....\n"
+			+ "6..195...\n"
+			+ ".98....6.\n"
+			+ "8...6...3\n"
+			+ "4..8.3..1\n"
+			+ "7...2...6\n"
+			+ ".6....28.\n"
+			+ "...419..5\n"
+			+ "....8..79\n";
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * board
+	 * @return 81 values from 0 to 9 where about one square in
+	 * emptyOneIn is empty, which need not be a legal sudoku since the
+	 * codec does not look at the rules
+	 */
+	private static int[] board(Random random, int emptyOneIn) {
+		int[] cells = new int[81];
+		for (int i = 0; i < 81; i++) {
+			cells[i] = (random.nextInt(emptyOneIn) == 0) ? 0 : 1 + random.nextInt(9);
+		}
+		return cells;
+	}
+
+	private static int[][] boards() {
+		Random random = new Random(42);
+		int[][] boards = new int[40][];
+		boards[0] = new int[81];
+		boards[1] = board(random, Integer.MAX_VALUE); // no empty squares
+		for (int k = 2; k < boards.length; k++) {
+			boards[k] = board(random, 1 + k%5);
+		}
+		return boards;
+	}
+
+	private static int givens(int[] cells) {
+		int g = 0;
+		for (int v : cells) if (v != 0) g++;
+		return g;
+	}
+
+	@Test
+	public void nibblesRoundTrip() {
+		byte[] buf = new byte[3 + BoardCodec.NIBBLE_BYTES];
+		int[] back = new int[81];
+		for (int[] cells : boards()) {
+			BoardCodec.encodeNibbles(cells, buf, 3);
+			BoardCodec.decodeNibbles(buf, 3, back);
+			assertArrayEquals(cells, back);
+		}
+	}
+
+	@Test
+	public void givensRoundTrip() {
+		byte[] buf = new byte[5 + BoardCodec.MAX_GIVENS_BYTES];
+		int[] back = new int[81];
+		for (int[] cells : boards()) {
+			int len = BoardCodec.encodeGivens(cells, buf, 5);
+			assertEquals(BoardCodec.MASK_BYTES + (givens(cells) + 1)/2, len);
+			assertEquals(len, BoardCodec.givensLength(buf, 5));
+			assertEquals(len, BoardCodec.decodeGivens(buf, 5, back));
+			assertArrayEquals(cells, back);
+		}
+	}
+
+	@Test
+	public void givensSizes() {
+		byte[] buf = new byte[BoardCodec.MAX_GIVENS_BYTES];
+		assertEquals(11, BoardCodec.encodeGivens(new int[81], buf, 0));
+		int[] cells = new int[81];
+		for (int i = 0; i < 25; i++) cells[i*3] = 1 + i%9;
+		assertEquals(24, BoardCodec.encodeGivens(cells, buf, 0));
+		cells = board(new Random(1), Integer.MAX_VALUE);
+		assertEquals(BoardCodec.MAX_GIVENS_BYTES, BoardCodec.encodeGivens(cells, buf, 0));
+	}
+
+	@Test
+	public void packedCorpusRoundTrip() throws IOException {
+		Path file = dir.resolve("corpus.sudc");
+		int[][] boards = boards();
+		try (PackedCorpus.Writer writer = new PackedCorpus.Writer(file)) {
+			for (int[] cells : boards) writer.add(cells);
+		}
+		int[] back = new int[81];
+		try (PackedCorpus.Reader reader = new PackedCorpus.Reader(file)) {
+			assertEquals(boards.length, reader.size());
+			for (int k = boards.length - 1; k >= 0; k--) {
+				reader.get(k, back);
+				assertArrayEquals(boards[k], back, "puzzle " + k);
+			}
+		}
+		byte[] record = new byte[BoardCodec.MAX_GIVENS_BYTES];
+		try (MappedCorpus corpus = new MappedCorpus(file)) {
+			assertEquals(boards.length, corpus.size());
+			for (int k = 0; k < boards.length; k++) {
+				corpus.get(k, back);
+				assertArrayEquals(boards[k], back, "puzzle " + k);
+				ByteBuffer view = corpus.view(k);
+				assertEquals(BoardCodec.encodeGivens(boards[k], record, 0), view.remaining());
+				for (int i = 0; i < view.remaining(); i++) assertEquals(record[i], view.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void modelPackedRoundTrip() {
+		MySudokuModel model = new MySudokuModel();
+		model.setBoard(PUZZLE);
+		byte[] data = model.exportPacked();
+		assertEquals(BoardCodec.MASK_BYTES + (30 + 1)/2, data.length);
+		MySudokuModel copy = new MySudokuModel();
+		copy.importPacked(data);
+		assertEquals(model.getBoard(), copy.getBoard());
+	}
+}
@@ -0,0 +1,363 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class EngineTest
+ * tests that SudokuSolver, DancingLinksSolver and ParallelSolutionCounter
+ * agree with each other and with a plain backtracking count on the
+ * number of solutions of a board, and on the solution when there is
+ * only one
+ * @author Jonas Lecerof
+ *
+ */
+public class EngineTest {
+
+	private static final int LIMIT = 10;
+
+	private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+	@AfterAll
+	public static void shutDown() {
+		POOL.shutdown();
+	}
+
+	/**
+	 * grid
+	 * @return a full board of the geometry, the first solution of the
+	 * empty board with its values shuffled
+	 */
+	static int[] grid(SudokuGeometry geometry, Random random) {
+		SudokuSolver solver = new SudokuSolver(geometry);
+		assertTrue(solver.load(new int[geometry.cells]));
+		assertEquals(1, solver.countSolutions(1));
+		int[] relabel = new int[geometry.size + 1];
+		for (int v = 1; v <= geometry.size; v++) relabel[v] = v;
+		for (int v = geometry.size; v > 1; v--) {
+			int k = 1 + random.nextInt(v);
+			int t = relabel[v];
+			relabel[v] = relabel[k];
+			relabel[k] = t;
+		}
+		int[] cells = flat(solver.getSolution());
+		for (int i = 0; i < cells.length; i++) cells[i] = relabel[cells[i]];
+		return cells;
+	}
+
+	/**
+	 * puzzle
+	 * @return the grid with a number of random squares emptied
+	 */
+	static int[] puzzle(int[] grid, int empty, Random random) {
+		int[] cells = grid.clone();
+		for (int n = 0; n < empty; ) {
+			int i = random.nextInt(cells.length);
+			if (cells[i] != 0) {
+				cells[i] = 0;
+				n++;
+			}
+		}
+		return cells;
+	}
+
+	static int[] flat(int[][] board) {
+		int size = board.length;
+		int[] cells = new int[size*size];
+		for (int r = 0; r < size; r++) System.arraycopy(board[r], 0, cells, r*size, size);
+		return cells;
+	}
+
+	/**
+	 * count
+	 * loads a board into an engine and counts its solutions
+	 * @return the count, 0 if the engine does not take the board
+	 */
+	static int count(SudokuEngine engine, int[] cells, int limit) {
+		return engine.load(cells) ? engine.countSolutions(limit) : 0;
+	}
+
+	/**
+	 * reference
+	 * counts solutions by filling the first empty square with every
+	 * value its row, column, block and groups allow, without any of the
+	 * tricks of the engines
+	 */
+	static int reference(SudokuGeometry geometry, int[] cells, int limit) {
+		for (int i = 0; i < cells.length; i++) {
+			if (cells[i] != 0 && !allowed(geometry, cells, i, cells[i])) return 0;
+		}
+		return search(geometry, cells.clone(), limit);
+	}
+
+	private static int search(SudokuGeometry geometry, int[] board, int limit) {
+		int cell = 0;
+		while (cell < board.length && board[cell] != 0) cell++;
+		if (cell == board.length) return 1;
+		int found = 0;
+		for (int v = 1; v <= geometry.size && found < limit; v++) {
+			if (allowed(geometry, board, cell, v)) {
+				board[cell] = v;
+				found += search(geometry, board, limit - found);
+				board[cell] = 0;
+			}
+		}
+		return found;
+	}
+
+	private static boolean allowed(SudokuGeometry geometry, int[] board, int cell, int val) {
+		int size = geometry.size;
+		int row = cell/size, col = cell%size;
+		for (int j = 0; j < board.length; j++) {
+			if (j != cell && board[j] == val && (j/size == row || j%size == col
+					|| geometry.blockIndex(j/size, j%size) == geometry.blockIndex(row, col)))
+				return false;
+		}
+		return geometry.allows(board, cell, val);
+	}
+
+	/**
+	 * assertAgree
+	 * counts the solutions of a board with every engine and checks that
+	 * the counts are the same, and the solutions when there is one
+	 * @return the number of solutions, at most LIMIT
+	 */
+	static int assertAgree(SudokuGeometry geometry, int[] cells, boolean withReference) {
+		SudokuSolver solver = new SudokuSolver(geometry);
+		DancingLinksSolver links = new DancingLinksSolver(geometry);
+		int n = count(solver, cells, LIMIT);
+		assertEquals(n, count(links, cells, LIMIT), "dancing links");
+		if (withReference) assertEquals(n, reference(geometry, cells, LIMIT), "reference");
+		ParallelSolutionCounter parallel = new ParallelSolutionCounter(geometry,
+				() -> new SudokuSolver(geometry), POOL, 4);
+		assertEquals(n, parallel.count(cells, LIMIT), "parallel");
+		if (n == 1) {
+			assertArrayEquals(flat(solver.getSolution()), flat(links.getSolution()));
+			assertArrayEquals(flat(solver.getSolution()), flat(parallel.getSolution()));
+		}
+		return n;
+	}
+
+	@Test
+	public void standardPuzzlesAgree() {
+		SudokuGeometry geometry = SudokuGeometry.STANDARD;
+		Random random = new Random(7);
+		int unique = 0, multiple = 0;
+		for (int k = 0; k < 60; k++) {
+			int[] grid = grid(geometry, random);
+			int[] cells = puzzle(grid, 40 + k%25, random);
+			int n = assertAgree(geometry, cells, true);
+			assertTrue(n >= 1);
+			if (n == 1) {
+				unique++;
+				SudokuSolver solver = new SudokuSolver(geometry);
+				count(solver, cells, 1);
+				assertArrayEquals(grid, flat(solver.getSolution()));
+			} else {
+				multiple++;
+			}
+		}
+		assertTrue(unique > 0 && multiple > 0, unique + " unique, " + multiple + " multiple");
+	}
+
+	@Test
+	public void unsolvableBoardsAgree() {
+		SudokuGeometry geometry = SudokuGeometry.STANDARD;
+		int[] cells = new int[81];
+		for (int col = 0; col < 8; col++) cells[col] = col + 1;
+		cells[9 + 8] = 9; // the top row can no longer be finished
+		assertEquals(0, assertAgree(geometry, cells, true));
+		Random random = new Random(3);
+		for (int k = 0; k < 20; k++) {
+			int[] puzzle = puzzle(grid(geometry, random), 50, random);
+			int i = random.nextInt(81);
+			while (puzzle[i] != 0) i = (i + 1)%81;
+			for (int v = 1; v <= 9; v++) {
+				puzzle[i] = v;
+				assertAgree(geometry, puzzle, false);
+			}
+		}
+	}
+
+	@Test
+	public void illegalBoardsAreRefused() {
+		SudokuGeometry geometry = SudokuGeometry.STANDARD;
+		int[] cells = new int[81];
+		cells[0] = 5;
+		cells[40] = 5;
+		cells[80] = 5; // all on the main diagonal, which only a variant makes a unit
+		assertTrue(new SudokuSolver(geometry).load(cells));
+		cells[8] = 5; // same row as square 0
+		assertFalse(new SudokuSolver(geometry).load(cells));
+		assertFalse(new DancingLinksSolver(geometry).load(cells));
+		assertEquals(0, assertAgree(geometry, cells, true));
+	}
+
+	@Test
+	public void countsStopAtTheLimit() {
+		SudokuGeometry geometry = SudokuGeometry.STANDARD;
+		int[] cells = puzzle(grid(geometry, new Random(5)), 70, new Random(6));
+		for (int limit : new int[] {1, 2, 37, 100}) {
+			assertEquals(limit, count(new SudokuSolver(geometry), cells, limit));
+			assertEquals(limit, count(new DancingLinksSolver(geometry), cells, limit));
+			assertEquals(limit, new ParallelSolutionCounter(geometry,
+					() -> new DancingLinksSolver(geometry), POOL, 4).count(cells, limit));
+		}
+	}
+
+	@Test
+	public void everyFourByFourGridIsCounted() {
+		SudokuGeometry geometry = SudokuGeometry.of(2);
+		int[] empty = new int[16];
+		assertEquals(288, reference(geometry, empty, 1000));
+		assertEquals(288, count(new SudokuSolver(geometry), empty, 1000));
+		assertEquals(288, count(new DancingLinksSolver(geometry), empty, 1000));
+		assertEquals(288, new ParallelSolutionCounter(geometry,
+				() -> new SudokuSolver(geometry), POOL, 3).count(empty, 1000));
+	}
+
+	@Test
+	public void smallAndLargeBoardsAgree() {
+		Random random = new Random(11);
+		for (int box = SudokuGeometry.MIN_BOX; box <= 4; box++) {
+			SudokuGeometry geometry = SudokuGeometry.of(box);
+			for (int k = 0; k < 10; k++) {
+				int[] grid = grid(geometry, random);
+				int[] cells = puzzle(grid, geometry.cells/2 + k*geometry.cells/40, random);
+				int n = assertAgree(geometry, cells, box == 2);
+				assertTrue(n >= 1, geometry + " puzzle " + k);
+			}
+		}
+	}
+
+	@Test
+	public void modelSolvesWithTheEngineOfItsSize() {
+		SudokuGeometry geometry = SudokuGeometry.of(4);
+		Random random = new Random(13);
+		int[] grid = grid(geometry, random);
+		int[] cells = puzzle(grid, 60, random);
+		MySudokuModel model = new MySudokuModel(geometry, () -> new DancingLinksSolver(geometry));
+		model.setBoard(cells);
+		assertTrue(model.solve());
+		for (int i = 0; i < grid.length; i++) assertEquals(grid[i], model.getBoard(i/16, i%16));
+		assertThrows(IllegalArgumentException.class,
+				() -> new MySudokuModel(geometry, DancingLinksSolver::new));
+		assertThrows(IllegalArgumentException.class,
+				() -> model.setEngine(() -> new SudokuSolver(SudokuGeometry.of(2))));
+	}
+
+	/**
+	 * shiftedRegions
+	 * @return jigsaw regions where every row of a band has its blocks
+	 * moved one more square to the right, wrapping around
+	 */
+	private static int[] shiftedRegions(int box) {
+		int size = box*box;
+		int[] region = new int[size*size];
+		for (int i = 0; i < region.length; i++) {
+			int row = i/size, col = i%size;
+			region[i] = (row/box)*box + ((col + row%box)%size)/box;
+		}
+		return region;
+	}
+
+	/**
+	 * killer
+	 * @return the geometry of a killer sudoku whose cages are pairs of
+	 * squares next to each other in a row, the last square of a row on
+	 * its own on odd sizes, with the sums of a grid
+	 */
+	private static SudokuGeometry killer(int box, int[] grid) {
+		int size = box*box, perRow = (size + 1)/2;
+		int[] cage = new int[size*size];
+		int[] sum = new int[size*perRow];
+		for (int i = 0; i < cage.length; i++) {
+			cage[i] = (i/size)*perRow + (i%size)/2;
+			sum[cage[i]] += grid[i];
+		}
+		return SudokuGeometry.builder(box).with(SudokuVariant.killer(cage, sum)).build();
+	}
+
+	@Test
+	public void diagonalPuzzlesAgree() {
+		Random random = new Random(17);
+		for (int box = SudokuGeometry.MIN_BOX; box <= 3; box++) {
+			SudokuGeometry geometry = SudokuGeometry.builder(box).with(SudokuVariant.diagonals()).build();
+			for (int k = 0; k < 15; k++) {
+				int[] grid = grid(geometry, random);
+				int main = 0, anti = 0;
+				for (int d = 0; d < geometry.size; d++) {
+					main |= 1 << grid[d*geometry.size + d];
+					anti |= 1 << grid[d*geometry.size + geometry.size - 1 - d];
+				}
+				assertEquals(geometry.all, main);
+				assertEquals(geometry.all, anti);
+				assertTrue(assertAgree(geometry, puzzle(grid, geometry.cells*2/3, random), true) >= 1);
+			}
+		}
+		SudokuGeometry x = SudokuGeometry.builder(2).with(SudokuVariant.diagonals()).build();
+		int n = reference(x, new int[16], 1000);
+		assertTrue(n > 0 && n < 288);
+		assertEquals(n, count(new SudokuSolver(x), new int[16], 1000));
+		assertEquals(n, count(new DancingLinksSolver(x), new int[16], 1000));
+	}
+
+	@Test
+	public void jigsawPuzzlesAgree() {
+		Random random = new Random(19);
+		for (int box = SudokuGeometry.MIN_BOX; box <= 3; box++) {
+			SudokuGeometry geometry = SudokuGeometry.builder(box)
+					.with(SudokuVariant.jigsaw(shiftedRegions(box))).build();
+			assertFalse(geometry.isRegular());
+			for (int k = 0; k < 15; k++) {
+				int[] grid = grid(geometry, random);
+				assertTrue(assertAgree(geometry, puzzle(grid, geometry.cells*2/3, random), true) >= 1);
+			}
+		}
+	}
+
+	@Test
+	public void killerPuzzlesAgree() {
+		Random random = new Random(23);
+		for (int box = SudokuGeometry.MIN_BOX; box <= 3; box++) {
+			int[] grid = grid(SudokuGeometry.of(box), random);
+			SudokuGeometry geometry = killer(box, grid);
+			assertThrows(IllegalArgumentException.class, () -> new DancingLinksSolver(geometry));
+			ParallelSolutionCounter parallel = new ParallelSolutionCounter(geometry,
+					() -> new SudokuSolver(geometry), POOL, 4);
+			for (int k = 0; k < 10; k++) {
+				int[] cells = puzzle(grid, geometry.cells/2 + k*geometry.cells/30, random);
+				SudokuSolver solver = new SudokuSolver(geometry);
+				int n = count(solver, cells, LIMIT);
+				assertTrue(n >= 1, geometry + " puzzle " + k);
+				assertEquals(n, parallel.count(cells, LIMIT), "parallel");
+				assertEquals(n, reference(geometry, cells, LIMIT), "reference");
+				if (n == 1) assertArrayEquals(grid, flat(solver.getSolution()));
+			}
+		}
+	}
+
+	@Test
+	public void countsReuseTheirEngines() {
+		SudokuGeometry geometry = SudokuGeometry.STANDARD;
+		AtomicInteger made = new AtomicInteger();
+		ParallelSolutionCounter parallel = new ParallelSolutionCounter(geometry, () -> {
+			made.incrementAndGet();
+			return new SudokuSolver(geometry);
+		}, POOL, 3);
+		Random random = new Random(29);
+		for (int k = 0; k < 30; k++) {
+			int[] cells = puzzle(grid(geometry, random), 55, random);
+			assertEquals(count(new SudokuSolver(geometry), cells, 50), parallel.count(cells, 50));
+		}
+		assertTrue(made.get() <= 2*POOL.getParallelism(), made.get() + " engines made");
+	}
+}
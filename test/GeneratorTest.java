@@ -0,0 +1,58 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class GeneratorTest
+ * tests that SudokuGenerator hands out puzzles of the difficulty asked
+ * for, and stops when its budget runs out
+ * @author Jonas Lecerof
+ *
+ */
+public class GeneratorTest {
+
+	@Test
+	public void nodeLimitStopsTheGridFill() {
+		SudokuGenerator generator = new SudokuGenerator(new SplittableRandom(1));
+		assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertNull(
+				generator.generate(25, 0, Integer.MAX_VALUE, new SolveBudget().maxNodes(0))));
+	}
+
+	@Test
+	public void puzzlesHaveTheirDifficulty() {
+		DifficultyGrader grader = new DifficultyGrader();
+		SudokuSolver solver = new SudokuSolver();
+		SudokuGenerator generator = new SudokuGenerator(new SplittableRandom(2));
+		for (MySudokuModel.Difficulty d : MySudokuModel.Difficulty.values()) {
+			int clues = d.clues(SudokuGeometry.STANDARD);
+			for (int k = 0; k < 20; k++) {
+				int[] puzzle = generator.generate(d, null);
+				int n = SudokuGenerator.countClues(puzzle);
+				assertTrue(n <= clues && (!d.atLeast || n == clues), d + " with " + n + " clues");
+				assertTrue(d.accepts(grader.rate(puzzle)), d + " rated " + grader.rate(puzzle));
+				assertTrue(solver.load(puzzle));
+				assertEquals(1, solver.countSolutions(2), d + " is not unique");
+			}
+		}
+	}
+
+	@Test
+	public void otherSizesKeepTheirShareOfClues() {
+		for (int box = SudokuGeometry.MIN_BOX; box <= 4; box += 2) {
+			SudokuGeometry geometry = SudokuGeometry.of(box);
+			SudokuGenerator generator = new SudokuGenerator(new SplittableRandom(3), geometry);
+			for (MySudokuModel.Difficulty d : MySudokuModel.Difficulty.values()) {
+				int[] puzzle = generator.generate(d, null);
+				int n = SudokuGenerator.countClues(puzzle);
+				int clues = d.clues(geometry);
+				assertTrue(n <= clues && (!d.atLeast || n == clues), geometry + " " + d + " with " + n + " clues");
+			}
+		}
+	}
+}
@@ -0,0 +1,127 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class HistoryTest
+ * tests the move history of MySudokuModel: undo, redo, the history
+ * limit and the ring buffer behind it
+ * @author Jonas Lecerof
+ *
+ */
+public class HistoryTest {
+
+	private MySudokuModel model;
+
+	@BeforeEach
+	public void setUp() {
+		model = new MySudokuModel();
+	}
+
+	/**
+	 * play
+	 * puts k+1 on the square (k, k) for k from 0 to moves-1, which
+	 * never repeats a value in a row, column or block
+	 */
+	private void play(int moves) {
+		for (int k = 0; k < moves; k++) {
+			model.setBoard(k, k, k + 1);
+		}
+	}
+
+	/**
+	 * assertPlayed
+	 * checks that exactly the first moves of play are on the board
+	 */
+	private void assertPlayed(int moves) {
+		for (int k = 0; k < 9; k++) {
+			assertEquals(k < moves ? k + 1 : 0, model.getBoard(k, k), "square " + k);
+		}
+	}
+
+	@Test
+	public void undoAndRedoWalkTheHistory() {
+		play(5);
+		model.undo();
+		model.undo();
+		assertPlayed(3);
+		model.redo();
+		assertPlayed(4);
+		model.setBoard(8, 8, 9); // a new move forgets the move left to redo
+		model.redo();
+		assertEquals(9, model.getBoard(8, 8));
+		assertEquals(0, model.getBoard(4, 4));
+	}
+
+	@Test
+	public void lowerLimitForgetsRedoMovesFirst() {
+		play(8);
+		for (int i = 0; i < 4; i++) model.undo();
+		model.setHistoryLimit(2);
+		assertPlayed(4);
+		model.redo(); // the redo moves are gone
+		assertPlayed(4);
+		model.undo();
+		model.undo();
+		assertPlayed(2);
+		model.undo(); // the oldest moves are gone but stay on the board
+		assertPlayed(2);
+		model.redo();
+		model.redo();
+		assertPlayed(4);
+		model.redo();
+		assertPlayed(4);
+	}
+
+	@Test
+	public void lowerLimitKeepsRedoMovesThatFit() {
+		play(8);
+		for (int i = 0; i < 6; i++) model.undo();
+		model.setHistoryLimit(4);
+		assertPlayed(2);
+		for (int i = 0; i < 4; i++) model.redo();
+		assertPlayed(4);
+		model.undo();
+		model.undo();
+		model.undo();
+		model.undo();
+		assertPlayed(0);
+	}
+
+	@Test
+	public void limitDropsOldestMovesAndResetStillWorks() {
+		model.setHistoryLimit(3);
+		play(9);
+		for (int i = 0; i < 9; i++) model.undo();
+		assertPlayed(6);
+		model.reset();
+		assertPlayed(0);
+	}
+
+	@Test
+	public void historyWrapsAroundTheRingBuffer() {
+		model.setHistoryLimit(5);
+		// far more moves than the buffer holds, so the head wraps many times
+		for (int i = 0; i < 1000; i++) {
+			model.setBoard(0, 0, 1 + i % 9);
+		}
+		for (int i = 0; i < 5; i++) model.undo();
+		assertEquals(1 + 994 % 9, model.getBoard(0, 0));
+		model.undo();
+		assertEquals(1 + 994 % 9, model.getBoard(0, 0));
+		for (int i = 0; i < 5; i++) model.redo();
+		assertEquals(1 + 999 % 9, model.getBoard(0, 0));
+	}
+
+	@Test
+	public void unlimitedHistoryGrows() {
+		for (int i = 0; i < 500; i++) {
+			model.setBoard(4, 4, 1 + i % 9);
+		}
+		for (int i = 0; i < 500; i++) model.undo();
+		assertEquals(0, model.getBoard(4, 4));
+		for (int i = 0; i < 500; i++) model.redo();
+		assertEquals(1 + 499 % 9, model.getBoard(4, 4));
+	}
+}
@@ -0,0 +1,88 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Class MappedCorpusTest
+ * tests that MappedCorpus finds the puzzles of text files, with lines
+ * of the same length and of different lengths
+ * @author Jonas Lecerof
+ *
+ */
+public class MappedCorpusTest {
+
+	@TempDir
+	Path dir;
+
+	/**
+	 * line
+	 * @return a line of the given length with the same digit everywhere
+	 */
+	private static String line(int digit, int length) {
+		char[] c = new char[length];
+		Arrays.fill(c, (char) ('0' + digit));
+		return new String(c);
+	}
+
+	private static String line(int digit) {
+		return line(digit, 81);
+	}
+
+	private MappedCorpus open(String text) throws IOException {
+		Path file = dir.resolve("corpus.txt");
+		Files.write(file, text.getBytes(StandardCharsets.US_ASCII));
+		return new MappedCorpus(file);
+	}
+
+	private static void assertPuzzle(MappedCorpus corpus, long index, int digit) {
+		int[] cells = new int[81];
+		corpus.get(index, cells);
+		for (int i = 0; i < 81; i++) assertEquals(digit, cells[i], "puzzle " + index + " square " + i);
+	}
+
+	@Test
+	public void fixedLinesWithoutLastLineEnd() throws IOException {
+		try (MappedCorpus corpus = open(line(1) + "\n" + line(2) + "\n" + line(3))) {
+			assertEquals(3, corpus.size());
+			for (int k = 0; k < 3; k++) assertPuzzle(corpus, k, k + 1);
+		}
+	}
+
+	@Test
+	public void fixedLinesWithCrLf() throws IOException {
+		try (MappedCorpus corpus = open(line(4) + "\r\n" + line(5) + "\r\n")) {
+			assertEquals(2, corpus.size());
+			assertPuzzle(corpus, 0, 4);
+			assertPuzzle(corpus, 1, 5);
+		}
+	}
+
+	@Test
+	public void shortAndLongLineBetweenSampledLineEnds() throws IOException {
+		// a short line and a long one that together fill two records, so
+		// the file size and every other line end look like fixed lines
+		StringBuilder text = new StringBuilder();
+		for (int k = 0; k < 200; k++) {
+			if (k == 100) {
+				text.append("12345\n").append(line(7, 157)).append('\n');
+				k++;
+			} else {
+				text.append(line(1 + k%9)).append('\n');
+			}
+		}
+		try (MappedCorpus corpus = open(text.toString())) {
+			assertEquals(199, corpus.size());
+			assertPuzzle(corpus, 99, 1 + 99%9);
+			assertPuzzle(corpus, 100, 7);
+			assertPuzzle(corpus, 101, 1 + 102%9);
+			assertPuzzle(corpus, 198, 1 + 199%9);
+		}
+	}
+}
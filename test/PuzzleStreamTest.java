@@ -0,0 +1,73 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class PuzzleStreamTest
+ * tests that PuzzleStream hands out the same puzzles for the same seed,
+ * in order, with the clues of their difficulty, and stops when closed
+ * @author Jonas Lecerof
+ *
+ */
+public class PuzzleStreamTest {
+
+	private static List<PuzzleStream.Puzzle> take(MySudokuModel.Difficulty d, long seed) {
+		return PuzzleStream.stream(12, d, seed).collect(Collectors.toList());
+	}
+
+	@Test
+	public void sameSeedSamePuzzles() {
+		List<PuzzleStream.Puzzle> a = take(MySudokuModel.Difficulty.HARD, 9);
+		List<PuzzleStream.Puzzle> b = take(MySudokuModel.Difficulty.HARD, 9);
+		assertEquals(12, a.size());
+		for (int i = 0; i < a.size(); i++) {
+			assertEquals(i, a.get(i).index);
+			assertArrayEquals(a.get(i).puzzle, b.get(i).puzzle, "puzzle " + i);
+		}
+	}
+
+	@Test
+	public void puzzlesHaveTheCluesOfTheirDifficulty() {
+		for (MySudokuModel.Difficulty d : MySudokuModel.Difficulty.values()) {
+			int clues = d.clues(SudokuGeometry.STANDARD);
+			for (PuzzleStream.Puzzle p : take(d, 4)) {
+				int n = SudokuGenerator.countClues(p.puzzle);
+				assertTrue(n <= clues && (!d.atLeast || n == clues), d + " with " + n + " clues");
+			}
+		}
+	}
+
+	@Test
+	public void closeStopsThePuzzlesAhead() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		PuzzleStream puzzles = new PuzzleStream(1_000_000, MySudokuModel.Difficulty.HARD, 1, executor, 8);
+		for (int i = 0; i < 3; i++) assertEquals(i, puzzles.next().index);
+		puzzles.close();
+		assertFalse(puzzles.hasNext());
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		long done = ((ThreadPoolExecutor) executor).getCompletedTaskCount();
+		assertTrue(done <= 3 + 8, done + " tasks run");
+	}
+
+	@Test
+	public void closingTheStreamClosesThePuzzles() {
+		long[] last = new long[1];
+		try (Stream<PuzzleStream.Puzzle> s = PuzzleStream.stream(1_000_000,
+				MySudokuModel.Difficulty.EASY, 2)) {
+			s.limit(5).forEach(p -> last[0] = p.index);
+		}
+		assertEquals(4, last[0]);
+	}
+}
@@ -0,0 +1,127 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class RollbackTest
+ * tests makeSolvable of MySudokuModel, which takes back the moves
+ * from the first one that leaves the board without a solution
+ * @author Jonas Lecerof
+ *
+ */
+public class RollbackTest {
+
+	private static final String PUZZLE =
+			"53..7....\n"
+			+ "6..195...\n"
+			+ ".98....6.\n"
+			+ "8...6...3\n"
+			+ "4..8.3..1\n"
+			+ "7...2...6\n"
+			+ ".6....28.\n"
+			+ "...419..5\n"
+			+ "....8..79\n";
+
+	private MySudokuModel model;
+
+	@BeforeEach
+	public void setUp() {
+		model = new MySudokuModel();
+	}
+
+	/**
+	 * fillRow
+	 * puts 1 to 8 on the first eight squares of the top row, so the
+	 * last square of the row can only take a 9
+	 */
+	private void fillRow() {
+		for (int col = 0; col < 8; col++) {
+			model.setBoard(0, col, col + 1);
+		}
+	}
+
+	@Test
+	public void solvableBoardIsLeftAlone() {
+		fillRow();
+		assertTrue(model.makeSolvable(null));
+		for (int col = 0; col < 8; col++) assertEquals(col + 1, model.getBoard(0, col));
+		model.undo();
+		assertEquals(0, model.getBoard(0, 7));
+	}
+
+	@Test
+	public void fillsAreTakenBackFromTheFirstDeadEnd() {
+		fillRow();
+		model.setBoard(1, 8, 9); // the top row can no longer be finished
+		model.setBoard(2, 0, 5);
+		model.makeSolvable();
+		for (int col = 0; col < 8; col++) assertEquals(col + 1, model.getBoard(0, col));
+		assertEquals(0, model.getBoard(1, 8));
+		assertEquals(0, model.getBoard(2, 0));
+		model.redo(); // the removed moves can not be redone
+		assertEquals(0, model.getBoard(1, 8));
+	}
+
+	@Test
+	public void eraseMakesAnEarlierDeadEndSolvable() {
+		fillRow();
+		model.setBoard(1, 8, 9);
+		model.setBoard(1, 8, 0); // erasing the 9 makes the board solvable again
+		model.setBoard(2, 8, 9);
+		model.makeSolvable();
+		for (int col = 0; col < 8; col++) assertEquals(col + 1, model.getBoard(0, col));
+		assertEquals(0, model.getBoard(1, 8));
+		assertEquals(0, model.getBoard(2, 8));
+		model.undo(); // only the last move was taken back
+		assertEquals(9, model.getBoard(1, 8));
+	}
+
+	@Test
+	public void overwriteMakesAnEarlierDeadEndSolvable() {
+		fillRow();
+		model.setBoard(1, 8, 9);
+		model.setBoard(1, 8, 4); // overwriting the 9 makes the board solvable again
+		model.setBoard(2, 8, 9);
+		model.makeSolvable();
+		assertEquals(4, model.getBoard(1, 8));
+		assertEquals(0, model.getBoard(2, 8));
+	}
+
+	@Test
+	public void uniquePuzzleKeepsMovesBeforeTheFirstWrongOne() {
+		model.setBoard(PUZZLE);
+		model.setBoard(0, 2, 4); // right
+		model.setBoard(0, 3, 2); // wrong, the solution has 6
+		model.setBoard(0, 5, 8); // right
+		model.makeSolvable();
+		assertEquals(4, model.getBoard(0, 2));
+		assertEquals(0, model.getBoard(0, 3));
+		assertEquals(0, model.getBoard(0, 5));
+	}
+
+	@Test
+	public void uniquePuzzleKeepsMovesAfterAWrongValueIsFixed() {
+		model.setBoard(PUZZLE);
+		model.setBoard(0, 3, 2); // wrong
+		model.setBoard(0, 3, 6); // fixed
+		model.setBoard(0, 2, 4); // right
+		model.setBoard(0, 5, 2); // wrong, the solution has 8
+		model.makeSolvable();
+		assertEquals(6, model.getBoard(0, 3));
+		assertEquals(4, model.getBoard(0, 2));
+		assertEquals(0, model.getBoard(0, 5));
+	}
+
+	@Test
+	public void spentBudgetLeavesTheBoardAsItWas() {
+		fillRow();
+		model.setBoard(1, 8, 9);
+		SolveBudget budget = new SolveBudget();
+		budget.cancel();
+		assertFalse(model.makeSolvable(budget));
+		assertEquals(9, model.getBoard(1, 8));
+	}
+}
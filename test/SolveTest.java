@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Class SolveTest
+ * tests that solve of MySudokuModel searches the board it has once and
+ * only uses the cached solution of the givens when it is ready
+ * @author Jonas Lecerof
+ *
+ */
+public class SolveTest {
+
+	private static final String PUZZLE =
+			"53..7....\n"
+			+ "6..195...\n"
+			+ ".98....6.\n"
+			+ "8...6...3\n"
+			+ "4..8.3..1\n"
+			+ "7...2...6\n"
+			+ ".6....28.\n"
+			+ "...419..5\n"
+			+ "....8..79\n";
+
+	@Test
+	public void solveDoesNotFillTheCache() {
+		MySudokuModel model = new MySudokuModel();
+		model.setBoard(PUZZLE);
+		SolveResult res = model.solve(null);
+		assertEquals(SolveResult.Status.SOLVED, res.getStatus());
+		assertTrue(res.getNodes() > 0);
+		assertFalse(model.hasSolution());
+		assertEquals(4, model.getBoard(0, 2));
+	}
+
+	@Test
+	public void wrongInputIsSearchedOnce() {
+		MySudokuModel model = new MySudokuModel();
+		model.setBoard(PUZZLE);
+		model.setBoard(0, 3, 2); // the solution has 6
+		assertFalse(model.solve());
+		assertFalse(model.hasSolution());
+		assertEquals(0, model.getBoard(0, 2));
+	}
+
+	@Test
+	public void readyCacheIsUsed() {
+		MySudokuModel model = new MySudokuModel();
+		model.setBoard(PUZZLE);
+		assertTrue(model.prepareSolution(null));
+		model.setBoard(0, 2, 4);
+		SolveResult res = model.solve(null);
+		assertEquals(SolveResult.Status.SOLVED, res.getStatus());
+		assertEquals(0, res.getNodes());
+		assertEquals(6, model.getBoard(0, 3));
+	}
+}